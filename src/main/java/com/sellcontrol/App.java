@@ -1,6 +1,13 @@
 package com.sellcontrol;
 
+import com.sellcontrol.dao.AuditLogDAO;
 import com.sellcontrol.db.DatabaseManager;
+import com.sellcontrol.db.DbExecutor;
+import com.sellcontrol.service.CajaService;
+import com.sellcontrol.service.ColaImpresion;
+import com.sellcontrol.service.DiarioTickets;
+import com.sellcontrol.service.MonitorImpresora;
+import com.sellcontrol.service.ProductoService;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -21,6 +28,12 @@ public class App extends Application {
 
         // Inicializar base de datos (crear tablas + seed)
         DatabaseManager.getInstance().initialize();
+        new AuditLogDAO().mantenimientoEnFondo();
+        new ProductoService().precargarCatalogo();
+        new CajaService().precargarSaldo();
+        MonitorImpresora.getInstance().iniciar();
+        DiarioTickets.getInstance().abrirEnFondo();
+        ColaImpresion.getInstance().iniciar();
 
         // Cargar pantalla de Login
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/sellcontrol/fxml/login.fxml"));
@@ -35,6 +48,15 @@ public class App extends Application {
         stage.show();
     }
 
+    /**
+     * Al cerrar la aplicación se libera la conexión de larga vida a SQLite.
+     */
+    @Override
+    public void stop() {
+        DbExecutor.shutdown();
+        DatabaseManager.getInstance().close();
+    }
+
     /**
      * Cambia la vista principal reemplazando el root de la escena actual.
      * No crea una nueva Scene para mantener el estado maximizado.
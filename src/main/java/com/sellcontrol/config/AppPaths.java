@@ -40,7 +40,7 @@ public class AppPaths {
         BASE_DIR = resolved;
 
         // Crear directorios necesarios al iniciar
-        String[] dirs = { "data", "config", "reportes", "respaldos", "logs" };
+        String[] dirs = { "data", "config", "reportes", "respaldos", "logs", "spool", "tickets", "cache" };
         for (String dir : dirs) {
             File d = BASE_DIR.resolve(dir).toFile();
             if (!d.exists()) {
@@ -66,6 +66,11 @@ public class AppPaths {
         return BASE_DIR.resolve("config").resolve("ticket.properties");
     }
 
+    /** Ruta al archivo de configuración del perfil de SQLite */
+    public static Path getDbConfigPath() {
+        return getConfigPath().resolveSibling("database.properties");
+    }
+
     /** Directorio para exportación de reportes Excel */
     public static Path getReportesDir() {
         return BASE_DIR.resolve("reportes");
@@ -81,6 +86,26 @@ public class AppPaths {
         return BASE_DIR.resolve("logs");
     }
 
+    /** Auditoría archivada (comprimida), fuera de la base de datos */
+    public static Path getAuditoriaArchivoDir() {
+        return getLogsDir().resolve("auditoria");
+    }
+
+    /** Cola de impresión: trabajos ESC/POS pendientes de enviar a la impresora */
+    public static Path getSpoolDir() {
+        return BASE_DIR.resolve("spool");
+    }
+
+    /** Diario de tickets impresos (copia exacta para reimprimir) */
+    public static Path getTicketsDir() {
+        return BASE_DIR.resolve("tickets");
+    }
+
+    /** Archivos generados que se pueden volver a crear (ej: logo del ticket ya convertido) */
+    public static Path getCacheDir() {
+        return BASE_DIR.resolve("cache");
+    }
+
     /** Directorio base de la aplicación */
     public static Path getBaseDir() {
         return BASE_DIR;
@@ -0,0 +1,279 @@
+package com.sellcontrol.controller;
+
+import com.sellcontrol.App;
+import com.sellcontrol.db.DbExecutor;
+import com.sellcontrol.model.AuditLog;
+import com.sellcontrol.model.FiltroAuditoria;
+import com.sellcontrol.model.Usuario;
+import com.sellcontrol.service.AuditoriaService;
+import com.sellcontrol.service.UsuarioService;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.fxml.FXML;
+import javafx.scene.control.*;
+import javafx.scene.control.cell.PropertyValueFactory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Controlador de la pantalla de auditoría (solo ADMIN).
+ *
+ * La tabla se llena por páginas: se cargan los registros más recientes y,
+ * cuando el usuario se acerca al final al desplazarse, la página siguiente
+ * (continuando desde el último id). Así abrir o filtrar la pantalla cuesta lo
+ * mismo con mil registros que con un año de acciones. Con "Incluir archivo",
+ * al terminarse la base se sigue con la auditoría ya archivada por retención.
+ */
+public class AuditoriaController {
+
+    private static final String TODOS = "Todos";
+    /** Filas antes del final a partir de las cuales se pide la página siguiente. */
+    private static final int MARGEN_CARGA = 40;
+
+    @FXML
+    private ComboBox<String> cmbUsuario;
+    @FXML
+    private ComboBox<String> cmbAccion;
+    @FXML
+    private ComboBox<String> cmbEntidad;
+    @FXML
+    private DatePicker dpDesde;
+    @FXML
+    private DatePicker dpHasta;
+    @FXML
+    private CheckBox chkArchivo;
+
+    @FXML
+    private TableView<AuditLog> tablaAuditoria;
+    @FXML
+    private TableColumn<AuditLog, Integer> colId;
+    @FXML
+    private TableColumn<AuditLog, String> colFecha;
+    @FXML
+    private TableColumn<AuditLog, String> colUsuario;
+    @FXML
+    private TableColumn<AuditLog, String> colAccion;
+    @FXML
+    private TableColumn<AuditLog, String> colEntidad;
+    @FXML
+    private TableColumn<AuditLog, String> colEntidadId;
+
+    @FXML
+    private Label lblMensaje;
+    @FXML
+    private ProgressIndicator piCargando;
+
+    private final AuditoriaService auditoriaService = new AuditoriaService();
+    private final UsuarioService usuarioService = new UsuarioService();
+    private final ObservableList<AuditLog> registros = FXCollections.observableArrayList();
+    private final List<Usuario> usuarios = new ArrayList<>();
+
+    private FiltroAuditoria filtro = new FiltroAuditoria(null, null, null, null, null);
+    /** Cambia con cada búsqueda, para descartar páginas de una búsqueda anterior. */
+    private int generacion;
+    private boolean cargando;
+    private boolean sinMas;
+    private boolean incluirArchivo;
+    /** true cuando ya se leyó toda la base y se sigue con el archivo. */
+    private boolean enArchivo;
+
+    /** Opciones de los filtros, cargadas en el hilo de base de datos. */
+    private record OpcionesFiltro(List<Usuario> usuarios, List<String> acciones, List<String> entidades) {
+    }
+
+    @FXML
+    public void initialize() {
+        colId.setCellValueFactory(new PropertyValueFactory<>("id"));
+        colFecha.setCellValueFactory(new PropertyValueFactory<>("fechaHora"));
+        colUsuario.setCellValueFactory(c -> new SimpleStringProperty(nombreUsuario(c.getValue())));
+        colAccion.setCellValueFactory(new PropertyValueFactory<>("accion"));
+        colEntidad.setCellValueFactory(new PropertyValueFactory<>("entidad"));
+        colEntidadId.setCellValueFactory(c -> new SimpleStringProperty(
+                c.getValue().getEntidadId() != null ? String.valueOf(c.getValue().getEntidadId()) : ""));
+
+        tablaAuditoria.setItems(registros);
+        // Al mostrarse una de las últimas filas se pide la página siguiente
+        tablaAuditoria.setRowFactory(tv -> new TableRow<>() {
+            @Override
+            protected void updateItem(AuditLog item, boolean empty) {
+                super.updateItem(item, empty);
+                if (!empty && getIndex() >= registros.size() - MARGEN_CARGA) {
+                    cargarSiguiente();
+                }
+            }
+        });
+
+        cmbUsuario.setItems(FXCollections.observableArrayList(TODOS));
+        cmbAccion.setItems(FXCollections.observableArrayList(TODOS));
+        cmbEntidad.setItems(FXCollections.observableArrayList(TODOS));
+        cmbUsuario.getSelectionModel().selectFirst();
+        cmbAccion.getSelectionModel().selectFirst();
+        cmbEntidad.getSelectionModel().selectFirst();
+
+        CargaAsync.enFx(DbExecutor.submit(() -> new OpcionesFiltro(usuarioService.listarTodos(),
+                auditoriaService.listarAcciones(), auditoriaService.listarEntidades())),
+                piCargando, this::mostrarOpciones, error -> mostrarMensaje("Error al cargar filtros: " + error, true));
+
+        buscar();
+    }
+
+    private void mostrarOpciones(OpcionesFiltro opciones) {
+        usuarios.clear();
+        usuarios.addAll(opciones.usuarios());
+        for (Usuario u : usuarios) {
+            cmbUsuario.getItems().add(u.getNombre() + " (" + u.getUsuario() + ")");
+        }
+        cmbAccion.getItems().addAll(opciones.acciones());
+        cmbEntidad.getItems().addAll(opciones.entidades());
+    }
+
+    /** Los registros archivados no traen el nombre: se busca en la lista de usuarios. */
+    private String nombreUsuario(AuditLog log) {
+        if (log.getNombreUsuario() != null) {
+            return log.getNombreUsuario();
+        }
+        for (Usuario u : usuarios) {
+            if (u.getId() == log.getUsuarioId()) {
+                return u.getNombre();
+            }
+        }
+        return "#" + log.getUsuarioId();
+    }
+
+    @FXML
+    private void handleBuscar() {
+        LocalDate desde = dpDesde.getValue();
+        LocalDate hasta = dpHasta.getValue();
+        if (desde != null && hasta != null && desde.isAfter(hasta)) {
+            mostrarMensaje("La fecha 'desde' es posterior a 'hasta'.", true);
+            return;
+        }
+        int iUsuario = cmbUsuario.getSelectionModel().getSelectedIndex();
+        filtro = new FiltroAuditoria(
+                iUsuario > 0 ? usuarios.get(iUsuario - 1).getId() : null,
+                seleccion(cmbAccion),
+                seleccion(cmbEntidad),
+                desde != null ? desde.toString() : null,
+                hasta != null ? hasta.toString() : null);
+        buscar();
+    }
+
+    @FXML
+    private void handleLimpiar() {
+        cmbUsuario.getSelectionModel().selectFirst();
+        cmbAccion.getSelectionModel().selectFirst();
+        cmbEntidad.getSelectionModel().selectFirst();
+        dpDesde.setValue(null);
+        dpHasta.setValue(null);
+        chkArchivo.setSelected(false);
+        filtro = new FiltroAuditoria(null, null, null, null, null);
+        buscar();
+    }
+
+    private static String seleccion(ComboBox<String> combo) {
+        String valor = combo.getValue();
+        return valor == null || TODOS.equals(valor) ? null : valor;
+    }
+
+    /** Descarta lo cargado y pide la primera página del filtro actual. */
+    private void buscar() {
+        generacion++;
+        registros.clear();
+        sinMas = false;
+        cargando = false;
+        incluirArchivo = chkArchivo.isSelected();
+        enArchivo = false;
+        cargarSiguiente();
+    }
+
+    private void cargarSiguiente() {
+        if (cargando || sinMas) {
+            return;
+        }
+        cargando = true;
+        int miGeneracion = generacion;
+        FiltroAuditoria f = filtro;
+        boolean primera = registros.isEmpty();
+        boolean archivo = enArchivo;
+        int ultimoId = primera ? 0 : registros.get(registros.size() - 1).getId();
+        lblMensaje.setText(archivo ? "Buscando en el archivo..." : "Cargando...");
+        lblMensaje.setStyle("-fx-text-fill: #7f8c8d;");
+
+        // El archivo se descomprime: va al hilo de tareas largas para no frenar
+        // las cargas de las demás pantallas
+        CompletableFuture<List<AuditLog>> carga = archivo
+                ? DbExecutor.submitLargo(() -> auditoriaService.paginaArchivada(f, primera ? Long.MAX_VALUE : ultimoId))
+                : DbExecutor.submit(() -> primera ? auditoriaService.primeraPagina(f)
+                        : auditoriaService.paginaSiguiente(f, ultimoId));
+        CargaAsync.enFx(carga, piCargando, pagina -> {
+            if (miGeneracion != generacion) {
+                return; // de una búsqueda anterior
+            }
+            cargando = false;
+            registros.addAll(pagina);
+            if (pagina.size() < AuditoriaService.TAMANO_PAGINA) {
+                if (incluirArchivo && !enArchivo) {
+                    enArchivo = true;
+                    cargarSiguiente();
+                    return;
+                }
+                sinMas = true;
+            }
+            lblMensaje.setText(registros.size() + " registro(s)" + (sinMas ? "" : " · desplácese para ver más"));
+            lblMensaje.setStyle("-fx-text-fill: #2c3e50;");
+        }, error -> {
+            if (miGeneracion == generacion) {
+                cargando = false;
+                mostrarMensaje("Error al cargar auditoría: " + error, true);
+            }
+        });
+    }
+
+    @FXML
+    private void handleVerificar() {
+        verificar(false);
+    }
+
+    /**
+     * Recalcula toda la cadena, archivo incluido. Con una auditoría grande
+     * tarda: corre en el hilo de tareas largas para no frenar las demás
+     * pantallas.
+     */
+    @FXML
+    private void handleVerificarCompleta() {
+        verificar(true);
+    }
+
+    private void verificar(boolean completa) {
+        mostrarMensaje(completa ? "Verificando toda la cadena de auditoría..." : "Verificando la cadena de auditoría...",
+                false);
+        CargaAsync.enFx(DbExecutor.submitLargo(() -> auditoriaService.verificarIntegridad(completa)), piCargando,
+                problema -> {
+                    if (problema == null) {
+                        mostrarMensaje(completa ? "✅ Auditoría íntegra: ningún registro fue alterado."
+                                : "✅ Auditoría íntegra desde el último checkpoint.", false);
+                    } else {
+                        Alert alert = new Alert(Alert.AlertType.ERROR);
+                        alert.setTitle("Auditoría alterada");
+                        alert.setHeaderText("La auditoría no pasó la verificación");
+                        alert.setContentText("Detalle: " + problema);
+                        alert.showAndWait();
+                        mostrarMensaje("⚠ Auditoría alterada: " + problema, true);
+                    }
+                }, error -> mostrarMensaje("Error al verificar: " + error, true));
+    }
+
+    @FXML
+    private void handleVolver() {
+        App.changeScene("dashboard.fxml", "Panel Principal", 900, 600);
+    }
+
+    private void mostrarMensaje(String msg, boolean esError) {
+        lblMensaje.setText(msg);
+        lblMensaje.setStyle(esError ? "-fx-text-fill: #e74c3c;" : "-fx-text-fill: #27ae60;");
+    }
+}
@@ -39,7 +39,11 @@ public class CajaController {
     @FXML
     private TableColumn<MovimientoCaja, String> colMFecha;
     @FXML
+    private Label lblSaldo;
+    @FXML
     private Label lblMensaje;
+    @FXML
+    private ProgressIndicator piCargando;
 
     private final CajaService cajaService = new CajaService();
 
@@ -66,7 +70,12 @@ public class CajaController {
     }
 
     private void cargarDatos() {
-        tablaMovimientos.setItems(FXCollections.observableArrayList(cajaService.movimientosDeHoy()));
+        CargaAsync.enFx(cajaService.saldoEsperadoAsync(), piCargando,
+                saldo -> lblSaldo.setText(String.format("₡%.2f", saldo)),
+                error -> mostrarMensaje("Error al cargar el saldo: " + error, true));
+        CargaAsync.enFx(cajaService.movimientosDeHoyAsync(), piCargando,
+                movimientos -> tablaMovimientos.setItems(FXCollections.observableArrayList(movimientos)),
+                error -> mostrarMensaje("Error al cargar movimientos: " + error, true));
     }
 
     @FXML
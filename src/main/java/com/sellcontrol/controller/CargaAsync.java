@@ -0,0 +1,55 @@
+package com.sellcontrol.controller;
+
+import javafx.application.Platform;
+import javafx.scene.control.ProgressIndicator;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Aplica en el hilo de JavaFX el resultado de una carga hecha en segundo
+ * plano, mostrando el indicador de progreso mientras haya cargas pendientes.
+ */
+final class CargaAsync {
+
+    private static final String PENDIENTES = "cargasPendientes";
+
+    private CargaAsync() {
+    }
+
+    /**
+     * Debe llamarse desde el hilo de JavaFX.
+     *
+     * @param futuro     carga en curso (normalmente de DbExecutor)
+     * @param indicador  indicador a mostrar mientras carga (puede ser null)
+     * @param alTerminar recibe el resultado, en el hilo de JavaFX
+     * @param alFallar   recibe el mensaje de error, en el hilo de JavaFX
+     */
+    static <T> void enFx(CompletableFuture<T> futuro, ProgressIndicator indicador, Consumer<T> alTerminar,
+            Consumer<String> alFallar) {
+        cambiarPendientes(indicador, 1);
+        futuro.whenComplete((resultado, error) -> Platform.runLater(() -> {
+            cambiarPendientes(indicador, -1);
+            if (error == null) {
+                alTerminar.accept(resultado);
+            } else {
+                Throwable causa = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error;
+                System.err.println("[UI] Error en carga en segundo plano: " + causa.getMessage());
+                alFallar.accept(causa.getMessage());
+            }
+        }));
+    }
+
+    private static void cambiarPendientes(ProgressIndicator indicador, int delta) {
+        if (indicador == null)
+            return;
+        Object actual = indicador.getProperties().get(PENDIENTES);
+        int pendientes = Math.max(0, (actual instanceof Integer n ? n : 0) + delta);
+        indicador.getProperties().put(PENDIENTES, pendientes);
+        indicador.setVisible(pendientes > 0);
+        indicador.setManaged(pendientes > 0);
+    }
+}
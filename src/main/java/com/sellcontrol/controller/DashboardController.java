@@ -30,6 +30,8 @@ public class DashboardController {
     private Button btnReportes;
     @FXML
     private Button btnTicketConfig;
+    @FXML
+    private Button btnAuditoria;
 
     @FXML
     public void initialize() {
@@ -50,6 +52,8 @@ public class DashboardController {
                 btnReportes.setManaged(false);
                 btnTicketConfig.setVisible(false);
                 btnTicketConfig.setManaged(false);
+                btnAuditoria.setVisible(false);
+                btnAuditoria.setManaged(false);
             }
         }
     }
@@ -89,6 +93,11 @@ public class DashboardController {
         App.changeScene("ticket_config.fxml", "Configurar Ticket", 900, 600);
     }
 
+    @FXML
+    private void handleAuditoria() {
+        App.changeScene("auditoria.fxml", "Auditoría", 1000, 650);
+    }
+
     @FXML
     private void handleCerrarSesion() {
         new AuthService().logout();
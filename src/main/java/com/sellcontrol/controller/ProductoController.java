@@ -37,6 +37,8 @@ public class ProductoController {
     private TextField txtBuscar;
     @FXML
     private Label lblMensaje;
+    @FXML
+    private ProgressIndicator piCargando;
 
     private final ProductoService productoService = new ProductoService();
     private ObservableList<Producto> productos;
@@ -56,10 +58,12 @@ public class ProductoController {
     }
 
     private void cargarDatos() {
-        productos = FXCollections.observableArrayList(productoService.listarTodos());
-        tablaProductos.setItems(productos);
-        lblMensaje.setText("Total: " + productos.size() + " productos");
-        lblMensaje.setStyle("-fx-text-fill: #7f8c8d;");
+        CargaAsync.enFx(productoService.listarTodosAsync(), piCargando, lista -> {
+            productos = FXCollections.observableArrayList(lista);
+            tablaProductos.setItems(productos);
+            lblMensaje.setText("Total: " + productos.size() + " productos");
+            lblMensaje.setStyle("-fx-text-fill: #7f8c8d;");
+        }, error -> mostrarMensaje("Error al cargar productos: " + error, true));
     }
 
     @FXML
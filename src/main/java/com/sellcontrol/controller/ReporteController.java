@@ -1,6 +1,8 @@
 package com.sellcontrol.controller;
 
 import com.sellcontrol.App;
+import com.sellcontrol.db.DbExecutor;
+import com.sellcontrol.model.ReportSnapshot;
 import com.sellcontrol.model.Venta;
 import com.sellcontrol.service.ExcelExportService;
 import com.sellcontrol.service.ReporteService;
@@ -63,6 +65,8 @@ public class ReporteController {
 
     @FXML
     private Label lblMensaje;
+    @FXML
+    private ProgressIndicator piCargando;
 
     private final ReporteService reporteService = new ReporteService();
     private final ExcelExportService excelExportService = new ExcelExportService();
@@ -102,58 +106,65 @@ public class ReporteController {
         generarReporte();
     }
 
+    /** Datos del reporte cargados en el hilo de base de datos. */
+    private record DatosReporte(ReportSnapshot resumen, List<Venta> ventas) {
+    }
+
     private void generarReporte() {
-        try {
-            LocalDate desde = dpDesde.getValue();
-            LocalDate hasta = dpHasta.getValue();
-            if (desde == null || hasta == null) {
-                lblMensaje.setText("Seleccione rango de fechas.");
-                return;
-            }
-
-            String desdeStr = desde.toString();
-            String hastaStr = hasta.toString();
-            System.out.println("[Reportes] Generando reporte: " + desdeStr + " a " + hastaStr);
-
-            // Ventas
-            List<Venta> ventas = reporteService.ventasPorRango(desdeStr, hastaStr);
-            tablaVentas.setItems(FXCollections.observableArrayList(ventas));
-
-            double totalVentas = reporteService.totalVentasTodas(desdeStr, hastaStr);
-            double cobradas = reporteService.totalVentasCobradas(desdeStr, hastaStr);
-            double pendientes = totalVentas - cobradas;
-
-            lblTotalVentas.setText(String.format("₡%.2f", totalVentas));
-            lblVentasCobradas.setText(String.format("₡%.2f", cobradas));
-            lblVentasPendientes.setText(String.format("₡%.2f", pendientes));
-
-            // Por método de pago
-            lblEfectivo
-                    .setText(String.format("₡%.2f", reporteService.totalPorMetodoPago(desdeStr, hastaStr, "EFECTIVO")));
-            lblTarjeta
-                    .setText(String.format("₡%.2f", reporteService.totalPorMetodoPago(desdeStr, hastaStr, "TARJETA")));
-            lblSinpe.setText(String.format("₡%.2f", reporteService.totalPorMetodoPago(desdeStr, hastaStr, "SINPE")));
-
-            // Gastos y merma
-            double gastos = reporteService.totalGastos(desdeStr, hastaStr);
-            double merma = reporteService.totalMerma(desdeStr, hastaStr);
-            double ganancia = reporteService.gananciaReal(desdeStr, hastaStr);
-
-            lblGastos.setText(String.format("₡%.2f", gastos));
-            lblMerma.setText(String.format("₡%.2f", merma));
-            lblGanancia.setText(String.format("₡%.2f", ganancia));
-            lblGanancia.setStyle(ganancia >= 0 ? "-fx-text-fill: #27ae60; -fx-font-weight: bold; -fx-font-size: 18px;"
-                    : "-fx-text-fill: #e74c3c; -fx-font-weight: bold; -fx-font-size: 18px;");
-
-            lblMensaje.setText("Reporte generado: " + ventas.size() + " ventas encontradas.");
-            lblMensaje.setStyle("-fx-text-fill: #27ae60;");
-            System.out.println("[Reportes] Ventas encontradas: " + ventas.size() + ", Total: " + totalVentas);
-        } catch (Exception e) {
-            System.err.println("[Reportes] Error: " + e.getMessage());
-            e.printStackTrace();
-            lblMensaje.setText("Error al generar reporte: " + e.getMessage());
+        LocalDate desde = dpDesde.getValue();
+        LocalDate hasta = dpHasta.getValue();
+        if (desde == null || hasta == null) {
+            lblMensaje.setText("Seleccione rango de fechas.");
+            return;
+        }
+
+        String desdeStr = desde.toString();
+        String hastaStr = hasta.toString();
+        System.out.println("[Reportes] Generando reporte: " + desdeStr + " a " + hastaStr);
+        lblMensaje.setText("Generando reporte...");
+        lblMensaje.setStyle("-fx-text-fill: #7f8c8d;");
+
+        CargaAsync.enFx(DbExecutor.submit(() -> new DatosReporte(
+                reporteService.snapshot(desdeStr, hastaStr),
+                reporteService.ventasPorRango(desdeStr, hastaStr))),
+                piCargando, this::mostrarReporte, error -> {
+                    lblMensaje.setText("Error al generar reporte: " + error);
+                    lblMensaje.setStyle("-fx-text-fill: #e74c3c;");
+                });
+    }
+
+    private void mostrarReporte(DatosReporte datos) {
+        ReportSnapshot r = datos.resumen();
+        if (r == null) {
+            lblMensaje.setText("Error al generar reporte: no se pudieron calcular los totales.");
             lblMensaje.setStyle("-fx-text-fill: #e74c3c;");
+            return;
         }
+
+        // Ventas
+        tablaVentas.setItems(FXCollections.observableArrayList(datos.ventas()));
+
+        lblTotalVentas.setText(String.format("₡%.2f", r.getTotalVentas()));
+        lblVentasCobradas.setText(String.format("₡%.2f", r.getCobradas()));
+        lblVentasPendientes.setText(String.format("₡%.2f", r.getPendientes()));
+
+        // Por método de pago
+        lblEfectivo.setText(String.format("₡%.2f", r.getEfectivo()));
+        lblTarjeta.setText(String.format("₡%.2f", r.getTarjeta()));
+        lblSinpe.setText(String.format("₡%.2f", r.getSinpe()));
+
+        // Gastos y merma
+        double ganancia = r.getGanancia();
+        lblGastos.setText(String.format("₡%.2f", r.getTotalGastos()));
+        lblMerma.setText(String.format("₡%.2f", r.getTotalMerma()));
+        lblGanancia.setText(String.format("₡%.2f", ganancia));
+        lblGanancia.setStyle(ganancia >= 0 ? "-fx-text-fill: #27ae60; -fx-font-weight: bold; -fx-font-size: 18px;"
+                : "-fx-text-fill: #e74c3c; -fx-font-weight: bold; -fx-font-size: 18px;");
+
+        lblMensaje.setText("Reporte generado: " + r.getCantidadVentas() + " ventas encontradas.");
+        lblMensaje.setStyle("-fx-text-fill: #27ae60;");
+        System.out.println("[Reportes] Ventas encontradas: " + r.getCantidadVentas() + ", Total: "
+                + r.getTotalVentas());
     }
 
     @FXML
@@ -175,14 +186,21 @@ public class ReporteController {
         if (destino == null)
             return; // cancelado
 
-        String error = excelExportService.exportar(desde.toString(), hasta.toString(), destino);
-        if (error == null) {
-            lblMensaje.setText("✅ Reporte exportado: " + destino.getName());
-            lblMensaje.setStyle("-fx-text-fill: #27ae60;");
-        } else {
-            lblMensaje.setText(error);
-            lblMensaje.setStyle("-fx-text-fill: #e74c3c;");
-        }
+        lblMensaje.setText("Exportando reporte...");
+        lblMensaje.setStyle("-fx-text-fill: #7f8c8d;");
+        CargaAsync.enFx(excelExportService.exportarAsync(desde.toString(), hasta.toString(), destino), piCargando,
+                error -> {
+                    if (error == null) {
+                        lblMensaje.setText("✅ Reporte exportado: " + destino.getName());
+                        lblMensaje.setStyle("-fx-text-fill: #27ae60;");
+                    } else {
+                        lblMensaje.setText(error);
+                        lblMensaje.setStyle("-fx-text-fill: #e74c3c;");
+                    }
+                }, error -> {
+                    lblMensaje.setText("Error al exportar: " + error);
+                    lblMensaje.setStyle("-fx-text-fill: #e74c3c;");
+                });
     }
 
     @FXML
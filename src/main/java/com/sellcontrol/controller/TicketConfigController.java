@@ -3,19 +3,26 @@ package com.sellcontrol.controller;
 import com.sellcontrol.App;
 import com.sellcontrol.service.TicketConfigService;
 import javafx.fxml.FXML;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.TextAlignment;
 
+import java.nio.file.Path;
+
 /**
  * Controlador para la pantalla de configuración del ticket.
  * Permite editar los textos del ticket y ver una vista previa en tiempo real.
  */
 public class TicketConfigController {
 
+    @FXML
+    private CheckBox chkImprimirLogo;
     @FXML
     private TextField txtNombreNegocio;
     @FXML
@@ -42,6 +49,7 @@ public class TicketConfigController {
     @FXML
     public void initialize() {
         // Cargar valores actuales
+        chkImprimirLogo.setSelected(configService.isImprimirLogo());
         txtNombreNegocio.setText(configService.getNombreNegocio());
         txtSubtitulo.setText(configService.getSubtitulo());
         txtDireccion.setText(configService.getDireccion());
@@ -52,6 +60,7 @@ public class TicketConfigController {
         txtPie.setText(configService.getPie());
 
         // Listeners para actualizar vista previa en tiempo real
+        chkImprimirLogo.selectedProperty().addListener((o, ov, nv) -> actualizarPreview());
         txtNombreNegocio.textProperty().addListener((o, ov, nv) -> actualizarPreview());
         txtSubtitulo.textProperty().addListener((o, ov, nv) -> actualizarPreview());
         txtDireccion.textProperty().addListener((o, ov, nv) -> actualizarPreview());
@@ -72,6 +81,9 @@ public class TicketConfigController {
         String separadorFino = "--------------------------------";
 
         // Encabezado
+        if (chkImprimirLogo.isSelected()) {
+            agregarLogo();
+        }
         agregarLabel(txtNombreNegocio.getText(), true, 16, TextAlignment.CENTER);
         agregarLabel(txtSubtitulo.getText(), false, 11, TextAlignment.CENTER);
 
@@ -121,6 +133,18 @@ public class TicketConfigController {
         agregarLabel("", false, 10, TextAlignment.CENTER);
     }
 
+    /** Logo configurado (o el ícono de la aplicación), al ancho aproximado del papel. */
+    private void agregarLogo() {
+        String ruta = configService.getLogoPath();
+        String url = ruta.isEmpty()
+                ? getClass().getResource("/com/sellcontrol/icon.png").toExternalForm()
+                : Path.of(ruta).toUri().toString();
+        ImageView logo = new ImageView(new Image(url, 160, 80, true, true));
+        VBox contenedor = new VBox(logo);
+        contenedor.setStyle("-fx-alignment: center;");
+        vboxPreview.getChildren().add(contenedor);
+    }
+
     /** Agrega un label estilizado a la vista previa. */
     private void agregarLabel(String text, boolean bold, double fontSize, TextAlignment align) {
         Label lbl = new Label(text != null && !text.isBlank() ? text : " ");
@@ -140,6 +164,7 @@ public class TicketConfigController {
 
     @FXML
     private void handleGuardar() {
+        configService.setImprimirLogo(chkImprimirLogo.isSelected());
         configService.setNombreNegocio(txtNombreNegocio.getText());
         configService.setSubtitulo(txtSubtitulo.getText());
         configService.setDireccion(txtDireccion.getText());
@@ -156,6 +181,7 @@ public class TicketConfigController {
 
     @FXML
     private void handleRestaurar() {
+        chkImprimirLogo.setSelected(false);
         txtNombreNegocio.setText("VERDULERIA VL");
         txtSubtitulo.setText("SellControl POS");
         txtDireccion.setText("");
@@ -194,13 +194,20 @@ public class UsuarioController {
         } else if ("TIENE_REGISTROS".equals(error)) {
             // Mostrar detalles y ofrecer forzar
             String detalles = usuarioService.contarRegistros(selected.getId());
+            boolean conAuditoria = usuarioService.tieneAuditoria(selected.getId());
             Alert alertForce = new Alert(Alert.AlertType.WARNING);
             alertForce.setTitle("Usuario con registros asociados");
             alertForce.setHeaderText("El usuario \"" + selected.getNombre() + "\" tiene los siguientes registros:");
-            alertForce.setContentText(
-                    detalles + "\n¿Desea eliminar al usuario Y TODOS sus registros?\nEsta acción es IRREVERSIBLE.");
+            if (conAuditoria) {
+                alertForce.setContentText(detalles + "\nLa auditoría no se puede borrar, así que el usuario no se"
+                        + " puede eliminar.\n¿Desea desactivarlo? Sus ventas y movimientos de caja se conservan.");
+            } else {
+                alertForce.setContentText(
+                        detalles + "\n¿Desea eliminar al usuario Y TODOS sus registros?\nEsta acción es IRREVERSIBLE.");
+            }
 
-            ButtonType btnEliminarTodo = new ButtonType("Eliminar Todo", ButtonBar.ButtonData.OK_DONE);
+            ButtonType btnEliminarTodo = new ButtonType(conAuditoria ? "Desactivar" : "Eliminar Todo",
+                    ButtonBar.ButtonData.OK_DONE);
             ButtonType btnCancelar = new ButtonType("Cancelar", ButtonBar.ButtonData.CANCEL_CLOSE);
             alertForce.getButtonTypes().setAll(btnEliminarTodo, btnCancelar);
 
@@ -210,6 +217,9 @@ public class UsuarioController {
                 if (errorForce == null) {
                     mostrarMensaje("Usuario y todos sus registros eliminados exitosamente.", false);
                     cargarDatos();
+                } else if ("DESACTIVADO".equals(errorForce)) {
+                    mostrarMensaje("Usuario desactivado. Sus ventas, movimientos y auditoría se conservan.", false);
+                    cargarDatos();
                 } else {
                     mostrarMensaje(errorForce, true);
                 }
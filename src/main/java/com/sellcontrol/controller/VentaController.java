@@ -1,9 +1,14 @@
 package com.sellcontrol.controller;
 
 import com.sellcontrol.App;
+import com.sellcontrol.model.BusquedaProductos;
 import com.sellcontrol.model.DetalleVenta;
 import com.sellcontrol.model.Producto;
+import com.sellcontrol.model.Usuario;
 import com.sellcontrol.model.Venta;
+import com.sellcontrol.service.AuthService;
+import com.sellcontrol.service.ColaImpresion;
+import com.sellcontrol.service.MonitorImpresora;
 import com.sellcontrol.service.ProductoService;
 import com.sellcontrol.service.TicketPrintService;
 import com.sellcontrol.service.VentaService;
@@ -97,22 +102,35 @@ public class VentaController {
 
     @FXML
     private Label lblMensaje;
+    @FXML
+    private ProgressIndicator piCargando;
+    @FXML
+    private Label lblImpresora;
 
     private final ProductoService productoService = new ProductoService();
     private final VentaService ventaService = new VentaService();
     private final TicketPrintService ticketPrintService = new TicketPrintService();
     private final ObservableList<DetalleVenta> detallesCarrito = FXCollections.observableArrayList();
     private double totalVenta = 0;
+    private List<Producto> productosActivos = List.of();
+    private long versionCatalogo = -1;
+    private final ObservableList<Producto> opcionesProducto = FXCollections.observableArrayList();
 
     @FXML
     public void initialize() {
-        // Cargar productos activos en combo
-        List<Producto> productosActivos = productoService.listarActivos();
-        cmbProducto.setItems(FXCollections.observableArrayList(productosActivos));
-
-        // Listener para búsqueda por ID o Nombre
-        txtBuscarProducto.textProperty()
-                .addListener((obs, oldVal, newVal) -> filtrarProductos(newVal, productosActivos));
+        // Cargar productos activos en combo (en segundo plano)
+        cmbProducto.setItems(opcionesProducto);
+        cargarProductos();
+
+        // Listener para búsqueda por ID o Nombre; si el catálogo cambió desde la
+        // última carga (p. ej. se editó un precio) se recarga la lista primero
+        txtBuscarProducto.textProperty().addListener((obs, oldVal, newVal) -> {
+            if (productoService.versionCatalogo() != versionCatalogo) {
+                cargarProductos();
+            } else {
+                filtrarProductos(newVal, productosActivos);
+            }
+        });
 
         // Métodos de pago
         cmbMetodoPago.setItems(FXCollections.observableArrayList("EFECTIVO", "TARJETA", "SINPE"));
@@ -173,20 +191,26 @@ public class VentaController {
             lblTotalTabla.setText("₡0.00");
         cargarVentasHoy();
         cargarFiados();
+        mostrarEstadoImpresora();
     }
 
     private void filtrarProductos(String filtro, List<Producto> todos) {
         if (filtro == null || filtro.trim().isEmpty()) {
-            cmbProducto.setItems(FXCollections.observableArrayList(todos));
+            opcionesProducto.setAll(todos);
             return;
         }
-        String f = filtro.toLowerCase().trim();
-        List<Producto> filtrados = todos.stream()
-                .filter(p -> String.valueOf(p.getId()).startsWith(f) || p.getNombre().toLowerCase().contains(f))
-                .toList();
-
-        cmbProducto.setItems(FXCollections.observableArrayList(filtrados));
-        if (filtrados.size() == 1) {
+        BusquedaProductos busqueda = productoService.buscarActivosConSugerencias(filtro);
+        List<Producto> filtrados = busqueda.productos();
+
+        opcionesProducto.setAll(filtrados);
+        if (busqueda.aproximada()) {
+            // Sugerencias por parecido: nunca se eligen solas, aunque haya una
+            if (!filtrados.isEmpty()) {
+                cmbProducto.setValue(null);
+                cmbProducto.show();
+                mostrarMensaje("Sin coincidencias exactas para \"" + filtro.trim() + "\": elija una sugerencia.", true);
+            }
+        } else if (filtrados.size() == 1) {
             cmbProducto.setValue(filtrados.get(0));
             // Opcional: enfocar en cantidad si encuentra un solo producto
             txtCantidad.requestFocus();
@@ -374,27 +398,25 @@ public class VentaController {
         }
 
         List<DetalleVenta> detalles = new ArrayList<>(detallesCarrito);
-        int ventaId = ventaService.registrarVenta(metodoPago, estado, clienteNombre, detalles);
+        Venta venta = ventaService.registrarVenta(metodoPago, estado, clienteNombre, detalles);
 
-        if (ventaId > 0) {
+        if (venta != null) {
+            int ventaId = venta.getId();
             mostrarMensaje("✅ Venta #" + ventaId + " registrada. Total: ₡" + String.format("%.2f", totalVenta), false);
 
-            // Abrir cajón de dinero solo para pagos en efectivo
+            // Abrir cajón de dinero solo para pagos en efectivo (va a la cola de impresión)
             if ("EFECTIVO".equals(metodoPago) && !chkFiado.isSelected()) {
                 ticketPrintService.abrirCajon();
             }
 
-            // Imprimir ticket automáticamente si el checkbox está marcado
+            // Imprimir ticket automáticamente si el checkbox está marcado. Se
+            // arma con el carrito en memoria, sin volver a leer la venta.
             if (chkImprimirTicket != null && chkImprimirTicket.isSelected()) {
-                Venta ventaCompleta = ventaService.buscarPorId(ventaId);
-                if (ventaCompleta != null) {
-                    List<DetalleVenta> detallesImprimir = ventaService.obtenerDetalles(ventaId);
-                    String cajero = ventaCompleta.getNombreUsuario() != null ? ventaCompleta.getNombreUsuario() : "—";
-                    String errorTicket = ticketPrintService.imprimir(ventaCompleta, detallesImprimir, cajero,
-                            montoPagado, cambio);
-                    if (errorTicket != null) {
-                        mostrarMensaje("Venta registrada, pero error al imprimir: " + errorTicket, true);
-                    }
+                Venta ventaTicket = ventaParaTicket(venta);
+                String errorTicket = ticketPrintService.imprimir(ventaTicket, detalles,
+                        ventaTicket.getNombreUsuario(), montoPagado, cambio);
+                if (errorTicket != null) {
+                    mostrarMensaje("Venta registrada, pero error al imprimir: " + errorTicket, true);
                 }
             }
 
@@ -407,6 +429,7 @@ public class VentaController {
             txtClienteNombre.clear();
             cargarVentasHoy();
             cargarFiados();
+            mostrarEstadoImpresora();
         } else {
             mostrarMensaje("Error al registrar la venta.", true);
         }
@@ -603,10 +626,14 @@ public class VentaController {
             return;
         }
 
-        List<DetalleVenta> detalles = ventaService.obtenerDetalles(selected.getId());
-        String cajero = selected.getNombreUsuario() != null ? selected.getNombreUsuario() : "—";
-
-        String error = ticketPrintService.imprimir(selected, detalles, cajero);
+        // Copia exacta del ticket original si está en el diario; si no, se
+        // genera una copia (que no se agrega al diario)
+        String error = null;
+        if (!ticketPrintService.reimprimir(selected.getId())) {
+            List<DetalleVenta> detalles = ventaService.obtenerDetalles(selected.getId());
+            String cajero = selected.getNombreUsuario() != null ? selected.getNombreUsuario() : "—";
+            error = ticketPrintService.imprimirCopia(selected, detalles, cajero);
+        }
         if (error == null) {
             mostrarMensaje("✅ Ticket de venta #" + selected.getId() + " enviado a imprimir.", false);
         } else {
@@ -614,14 +641,45 @@ public class VentaController {
         }
     }
 
+    /**
+     * Venta recién registrada, para el ticket: ya trae el ID y la fecha_hora
+     * de la base; solo le falta el nombre del cajero.
+     */
+    private Venta ventaParaTicket(Venta v) {
+        Usuario user = AuthService.getCurrentUser();
+        v.setNombreUsuario(user != null ? user.getNombre() : "—");
+        return v;
+    }
+
+    /** Estado de la impresora según la última verificación (no la consulta). */
+    private void mostrarEstadoImpresora() {
+        MonitorImpresora.EstadoImpresora estado = MonitorImpresora.getInstance().getEstado();
+        int enCola = ColaImpresion.getInstance().getPendientes();
+        lblImpresora.setText(estado.descripcion() + (enCola > 0 ? " · " + enCola + " en cola" : ""));
+        lblImpresora.setStyle(estado.estado() == MonitorImpresora.Estado.FUERA_DE_LINEA
+                ? "-fx-text-fill: #e74c3c;"
+                : "-fx-text-fill: #7f8c8d;");
+    }
+
+    private void cargarProductos() {
+        long version = productoService.versionCatalogo();
+        CargaAsync.enFx(productoService.listarActivosAsync(), piCargando, lista -> {
+            productosActivos = lista;
+            versionCatalogo = version;
+            filtrarProductos(txtBuscarProducto.getText(), productosActivos);
+        }, error -> mostrarMensaje("Error al cargar productos: " + error, true));
+    }
+
     private void cargarVentasHoy() {
-        List<Venta> ventas = ventaService.ventasDeHoy();
-        tablaVentasHoy.setItems(FXCollections.observableArrayList(ventas));
+        CargaAsync.enFx(ventaService.ventasDeHoyAsync(), piCargando,
+                ventas -> tablaVentasHoy.setItems(FXCollections.observableArrayList(ventas)),
+                error -> mostrarMensaje("Error al cargar ventas del día: " + error, true));
     }
 
     private void cargarFiados() {
-        List<Venta> fiados = ventaService.ventasPendientes();
-        tablaFiados.setItems(FXCollections.observableArrayList(fiados));
+        CargaAsync.enFx(ventaService.ventasPendientesAsync(), piCargando,
+                fiados -> tablaFiados.setItems(FXCollections.observableArrayList(fiados)),
+                error -> mostrarMensaje("Error al cargar fiados: " + error, true));
     }
 
     @FXML
@@ -629,7 +687,8 @@ public class VentaController {
         cargarVentasHoy();
         cargarFiados();
         // Recargar productos activos
-        cmbProducto.setItems(FXCollections.observableArrayList(productoService.listarActivos()));
+        cargarProductos();
+        mostrarEstadoImpresora();
         mostrarMensaje("Datos actualizados.", false);
     }
 
@@ -0,0 +1,468 @@
+package com.sellcontrol.dao;
+
+import com.sellcontrol.config.AppPaths;
+import com.sellcontrol.db.DatabaseManager;
+import com.sellcontrol.model.AuditLog;
+import com.sellcontrol.model.FiltroAuditoria;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archivo de la auditoría vieja, fuera de la base de datos.
+ *
+ * Los registros con más días que la retención se escriben en archivos GZIP de
+ * un solo día en AppPaths.getAuditoriaArchivoDir()
+ * (audit-yyyy-MM-dd-primerId.tsv.gz, una línea por registro:
+ * id, usuario_id, accion, entidad, entidad_id, fecha_hora y hash, separados
+ * por tab) y después se borran de audit_log por lotes, cada lote en su propia
+ * transacción junto con su fila en audit_archivo. Lo archivado es siempre un
+ * prefijo de ids (el trigger de borrado lo exige) y el último registro nunca
+ * se archiva, para que la cadena de hashes siga desde él.
+ *
+ * Si se corta a mitad de un lote, la siguiente pasada vuelve a escribir los
+ * mismos archivos (mismo nombre) antes de borrar.
+ *
+ * En la misma transacción se guarda en audit_archivo_usuario cuántos
+ * registros de cada usuario tiene cada archivo: así se sabe, sin
+ * descomprimir, si un usuario tiene auditoría archivada (ver
+ * UsuarioDAO.deleteConRegistros).
+ */
+final class ArchivoAuditoria {
+
+    private static final int LOTE = 2000;
+
+    /** Registro archivado y su hash en la cadena (null si es anterior a la cadena). */
+    record Linea(AuditLog log, byte[] hash) {
+    }
+
+    /** Un archivo registrado en audit_archivo: cubre los ids desdeId..hastaId. */
+    private record Segmento(long desdeId, long hastaId, String archivo, int registros, byte[] hash) {
+
+        String dia() {
+            // audit-yyyy-MM-dd-...
+            return archivo.substring(6, 16);
+        }
+    }
+
+    /**
+     * Coincidencias de un archivo con un filtro, en orden de id, leídas hasta
+     * (sin incluir) 'leidoHasta'. Es lo que pagina() recuerda del último
+     * archivo que descomprimió para seguir desde ahí en la página siguiente.
+     */
+    private record Posicion(FiltroAuditoria filtro, String archivo, long leidoHasta, List<AuditLog> coinciden) {
+    }
+
+    /** Lista de audit_archivo; null hasta leerla y tras cada archivado. */
+    private static List<Segmento> segmentosCache;
+
+    private static Posicion ultimaPosicion;
+
+    private ArchivoAuditoria() {
+    }
+
+    /**
+     * Pasa al archivo los registros con fecha anterior a hoy menos 'dias'.
+     *
+     * @return cuántos registros se archivaron.
+     */
+    static int archivar(int dias) throws SQLException, IOException {
+        DatabaseManager db = DatabaseManager.getInstance();
+        String corte = LocalDate.now().minusDays(dias).toString();
+        long desde;
+        long limite;
+        try (Connection conn = db.getConnection()) {
+            desde = escalar(conn, "SELECT COALESCE(MAX(hasta_id), 0) FROM audit_archivo");
+            long ultimo = escalar(conn, "SELECT COALESCE(MAX(id), 0) FROM audit_log");
+            long primeroVigente;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT id FROM audit_log WHERE fecha_hora >= ? ORDER BY fecha_hora, id LIMIT 1")) {
+                ps.setString(1, corte);
+                try (ResultSet rs = ps.executeQuery()) {
+                    primeroVigente = rs.next() ? rs.getLong(1) : ultimo + 1;
+                }
+            }
+            limite = Math.min(primeroVigente - 1, ultimo - 1);
+        }
+
+        Path dir = AppPaths.getAuditoriaArchivoDir();
+        int total = 0;
+        while (desde < limite) {
+            List<Linea> lote = leerLote(desde, limite);
+            if (lote.isEmpty()) {
+                break;
+            }
+
+            // Un archivo por cada tramo de registros del mismo día
+            List<Segmento> segmentos = new ArrayList<>();
+            Map<Long, Map<Integer, Integer>> usuarios = new HashMap<>();
+            long cubiertoHasta = desde;
+            int i = 0;
+            while (i < lote.size()) {
+                String dia = dia(lote.get(i).log());
+                int j = i + 1;
+                while (j < lote.size() && dia(lote.get(j).log()).equals(dia)) {
+                    j++;
+                }
+                List<Linea> tramo = lote.subList(i, j);
+                Linea ultima = tramo.get(tramo.size() - 1);
+                String nombre = String.format("audit-%s-%09d.tsv.gz", dia, tramo.get(0).log().getId());
+                escribir(dir.resolve(nombre), tramo);
+                segmentos.add(new Segmento(cubiertoHasta + 1, ultima.log().getId(), nombre, tramo.size(),
+                        ultima.hash()));
+                usuarios.put((long) ultima.log().getId(), contarUsuarios(tramo.stream()));
+                cubiertoHasta = ultima.log().getId();
+                i = j;
+            }
+
+            long desdeLote = desde;
+            long hastaLote = cubiertoHasta;
+            db.inTransaction(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("INSERT INTO audit_archivo "
+                        + "(desde_id, hasta_id, archivo, registros, hash) VALUES (?, ?, ?, ?, ?)")) {
+                    for (Segmento s : segmentos) {
+                        ps.setLong(1, s.desdeId());
+                        ps.setLong(2, s.hastaId());
+                        ps.setString(3, s.archivo());
+                        ps.setInt(4, s.registros());
+                        ps.setBytes(5, s.hash());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                for (Map.Entry<Long, Map<Integer, Integer>> e : usuarios.entrySet()) {
+                    guardarUsuarios(conn, e.getKey(), e.getValue());
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "DELETE FROM audit_log WHERE id > ? AND id <= ?")) {
+                    ps.setLong(1, desdeLote);
+                    ps.setLong(2, hastaLote);
+                    ps.executeUpdate();
+                }
+                return null;
+            });
+            // Después del commit y con el lock de la clase, para que segmentos()
+            // no guarde una lista leída antes de este lote
+            synchronized (ArchivoAuditoria.class) {
+                segmentosCache = null;
+            }
+            total += lote.size();
+            desde = hastaLote;
+        }
+        return total;
+    }
+
+    /**
+     * Cuenta los usuarios de los archivos que todavía no figuran en
+     * audit_archivo_usuario (los archivados antes de existir esa tabla),
+     * descomprimiendo cada uno. Mientras quede alguno sin contar,
+     * UsuarioDAO no borra usuarios con sus registros.
+     *
+     * @return cuántos archivos se contaron.
+     */
+    static int contarUsuariosPendientes() throws SQLException {
+        List<Segmento> pendientes = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT desde_id, hasta_id, archivo, registros, hash "
+                        + "FROM audit_archivo a WHERE NOT EXISTS "
+                        + "(SELECT 1 FROM audit_archivo_usuario u WHERE u.hasta_id = a.hasta_id) ORDER BY hasta_id")) {
+            while (rs.next()) {
+                pendientes.add(new Segmento(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getInt(4),
+                        rs.getBytes(5)));
+            }
+        }
+        int contados = 0;
+        for (Segmento s : pendientes) {
+            Map<Integer, Integer> usuarios;
+            try (Stream<Linea> lineas = lineas(s)) {
+                usuarios = contarUsuarios(lineas);
+            } catch (UncheckedIOException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                System.err.println("[ArchivoAuditoria] No se pudo contar " + s.archivo() + ": " + e.getMessage());
+                continue;
+            }
+            DatabaseManager.getInstance().inTransaction(conn -> {
+                guardarUsuarios(conn, s.hastaId(), usuarios);
+                return null;
+            });
+            contados++;
+        }
+        return contados;
+    }
+
+    private static Map<Integer, Integer> contarUsuarios(Stream<Linea> lineas) {
+        Map<Integer, Integer> usuarios = new HashMap<>();
+        lineas.forEach(l -> usuarios.merge(l.log().getUsuarioId(), 1, Integer::sum));
+        return usuarios;
+    }
+
+    private static void guardarUsuarios(Connection conn, long hastaId, Map<Integer, Integer> usuarios)
+            throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("INSERT OR IGNORE INTO audit_archivo_usuario "
+                + "(usuario_id, hasta_id, registros) VALUES (?, ?, ?)")) {
+            for (Map.Entry<Integer, Integer> u : usuarios.entrySet()) {
+                ps.setInt(1, u.getKey());
+                ps.setLong(2, hastaId);
+                ps.setInt(3, u.getValue());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static List<Linea> leerLote(long desde, long limite) throws SQLException {
+        List<Linea> lote = new ArrayList<>(LOTE);
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+                PreparedStatement ps = conn.prepareStatement("SELECT id, usuario_id, accion, entidad, entidad_id, "
+                        + "fecha_hora, hash FROM audit_log WHERE id > ? AND id <= ? ORDER BY id LIMIT ?")) {
+            ps.setLong(1, desde);
+            ps.setLong(2, limite);
+            ps.setInt(3, LOTE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    AuditLog log = new AuditLog();
+                    log.setId(rs.getInt(1));
+                    log.setUsuarioId(rs.getInt(2));
+                    log.setAccion(rs.getString(3));
+                    log.setEntidad(rs.getString(4));
+                    int entidadId = rs.getInt(5);
+                    log.setEntidadId(rs.wasNull() ? null : entidadId);
+                    log.setFechaHora(rs.getString(6));
+                    lote.add(new Linea(log, rs.getBytes(7)));
+                }
+            }
+        }
+        return lote;
+    }
+
+    private static void escribir(Path destino, List<Linea> lineas) throws IOException {
+        Files.createDirectories(destino.getParent());
+        Path tmp = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+                GZIPOutputStream gzip = new GZIPOutputStream(fos, 64 * 1024);
+                Writer w = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8))) {
+            for (Linea l : lineas) {
+                w.write(formatear(l));
+                w.write('\n');
+            }
+            w.flush();
+            gzip.finish();
+            // En disco antes de borrar los registros de la base
+            fos.getFD().sync();
+        }
+        try {
+            Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String formatear(Linea l) {
+        AuditLog log = l.log();
+        return log.getId() + "\t" + log.getUsuarioId() + "\t" + log.getAccion() + "\t" + log.getEntidad() + "\t"
+                + (log.getEntidadId() != null ? log.getEntidadId() : "") + "\t" + log.getFechaHora() + "\t"
+                + (l.hash() != null ? HexFormat.of().formatHex(l.hash()) : "");
+    }
+
+    private static Linea parsear(String linea) {
+        String[] c = linea.split("\t", -1);
+        AuditLog log = new AuditLog();
+        log.setId(Integer.parseInt(c[0]));
+        log.setUsuarioId(Integer.parseInt(c[1]));
+        log.setAccion(c[2]);
+        log.setEntidad(c[3]);
+        log.setEntidadId(c[4].isEmpty() ? null : Integer.valueOf(c[4]));
+        log.setFechaHora(c[5]);
+        return new Linea(log, c[6].isEmpty() ? null : HexFormat.of().parseHex(c[6]));
+    }
+
+    private static String dia(AuditLog log) {
+        String fecha = log.getFechaHora();
+        return fecha != null && fecha.length() >= 10 ? fecha.substring(0, 10) : "0000-00-00";
+    }
+
+    /**
+     * Registros archivados que cumplen el filtro, en orden de id, leídos
+     * archivo por archivo sin descomprimir todo en memoria. Solo se abren los
+     * archivos de los días del filtro. Debe cerrarse (try-with-resources).
+     */
+    static Stream<AuditLog> leer(FiltroAuditoria filtro) throws SQLException {
+        return segmentos().stream()
+                .filter(s -> diaEnRango(s.dia(), filtro))
+                .flatMap(ArchivoAuditoria::lineas)
+                .map(Linea::log)
+                .filter(log -> coincide(filtro, log));
+    }
+
+    /**
+     * Una página del archivo, del registro más nuevo al más viejo, con la
+     * misma paginación por id que audit_log: continúa desde 'antesDeId'.
+     *
+     * Cada archivo se descomprime solo hasta 'antesDeId' (están en orden de
+     * id) y sus coincidencias quedan en ultimaPosicion: las páginas
+     * siguientes dentro del mismo archivo salen de ahí sin volver a leerlo.
+     */
+    static synchronized List<AuditLog> pagina(FiltroAuditoria filtro, long antesDeId, int limite)
+            throws SQLException {
+        List<AuditLog> pagina = new ArrayList<>();
+        List<Segmento> segmentos = segmentos();
+        for (int i = segmentos.size() - 1; i >= 0 && pagina.size() < limite; i--) {
+            Segmento s = segmentos.get(i);
+            if (s.desdeId() >= antesDeId || !diaEnRango(s.dia(), filtro)) {
+                continue;
+            }
+            List<AuditLog> coinciden = coincidencias(s, filtro, antesDeId);
+            int k = coinciden.size() - 1;
+            while (k >= 0 && coinciden.get(k).getId() >= antesDeId) {
+                k--;
+            }
+            for (; k >= 0 && pagina.size() < limite; k--) {
+                pagina.add(coinciden.get(k));
+            }
+        }
+        return pagina;
+    }
+
+    /**
+     * Coincidencias del archivo con id menor que 'antesDeId': las recordadas
+     * si ya se leyó hasta ahí con el mismo filtro, o descomprimiendo el
+     * archivo hasta 'antesDeId'.
+     */
+    private static List<AuditLog> coincidencias(Segmento s, FiltroAuditoria filtro, long antesDeId) {
+        Posicion p = ultimaPosicion;
+        if (p != null && p.archivo().equals(s.archivo()) && p.filtro().equals(filtro)
+                && antesDeId <= p.leidoHasta()) {
+            return p.coinciden();
+        }
+        List<AuditLog> coinciden;
+        try (Stream<Linea> lineas = lineas(s)) {
+            coinciden = lineas.map(Linea::log)
+                    .takeWhile(log -> log.getId() < antesDeId)
+                    .filter(log -> coincide(filtro, log))
+                    .toList();
+        }
+        ultimaPosicion = new Posicion(filtro, s.archivo(), antesDeId, coinciden);
+        return coinciden;
+    }
+
+    /**
+     * Recalcula la cadena de hashes a lo largo de los archivos.
+     *
+     * @return null si está íntegra, o la descripción del primer problema.
+     */
+    static String verificar() throws SQLException {
+        byte[] anterior = CadenaAuditoria.GENESIS;
+        boolean enCadena = false;
+        for (Segmento s : segmentos()) {
+            Path archivo = AppPaths.getAuditoriaArchivoDir().resolve(s.archivo());
+            if (!Files.exists(archivo)) {
+                return "falta el archivo de auditoría " + s.archivo();
+            }
+            int leidas = 0;
+            try (Stream<Linea> lineas = lineas(s)) {
+                for (Linea l : (Iterable<Linea>) lineas::iterator) {
+                    leidas++;
+                    if (l.hash() == null) {
+                        if (enCadena) {
+                            return "el registro archivado #" + l.log().getId() + " no tiene hash";
+                        }
+                        continue;
+                    }
+                    if (!Arrays.equals(CadenaAuditoria.encadenar(anterior, l.log()), l.hash())) {
+                        return "la cadena se rompe en el registro archivado #" + l.log().getId();
+                    }
+                    enCadena = true;
+                    anterior = l.hash();
+                }
+            } catch (UncheckedIOException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                return "no se pudo leer " + s.archivo() + ": " + e.getMessage();
+            }
+            if (leidas != s.registros() || (s.hash() != null && !Arrays.equals(s.hash(), anterior))) {
+                return "el archivo " + s.archivo() + " no coincide con su registro en audit_archivo";
+            }
+        }
+        return null;
+    }
+
+    private static synchronized List<Segmento> segmentos() throws SQLException {
+        List<Segmento> cache = segmentosCache;
+        if (cache != null) {
+            return cache;
+        }
+        List<Segmento> segmentos = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT desde_id, hasta_id, archivo, registros, hash "
+                        + "FROM audit_archivo ORDER BY hasta_id")) {
+            while (rs.next()) {
+                segmentos.add(new Segmento(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getInt(4),
+                        rs.getBytes(5)));
+            }
+        }
+        segmentosCache = List.copyOf(segmentos);
+        return segmentosCache;
+    }
+
+    /** Líneas de un archivo, descomprimidas a medida que se leen. */
+    private static Stream<Linea> lineas(Segmento s) {
+        Path archivo = AppPaths.getAuditoriaArchivoDir().resolve(s.archivo());
+        try {
+            BufferedReader r = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(archivo), 64 * 1024), StandardCharsets.UTF_8));
+            return r.lines().map(ArchivoAuditoria::parsear).onClose(() -> {
+                try {
+                    r.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean diaEnRango(String dia, FiltroAuditoria f) {
+        return (f.desde() == null || dia.compareTo(f.desde()) >= 0)
+                && (f.hasta() == null || dia.compareTo(f.hasta()) <= 0);
+    }
+
+    private static boolean coincide(FiltroAuditoria f, AuditLog log) {
+        return (f.usuarioId() == null || f.usuarioId() == log.getUsuarioId())
+                && (f.accion() == null || f.accion().equals(log.getAccion()))
+                && (f.entidad() == null || f.entidad().equals(log.getEntidad()))
+                && (f.desde() == null || log.getFechaHora().compareTo(RangoFechas.inicio(f.desde())) >= 0)
+                && (f.hasta() == null || log.getFechaHora().compareTo(RangoFechas.finExclusivo(f.hasta())) < 0);
+    }
+
+    private static long escalar(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
@@ -2,32 +2,325 @@ package com.sellcontrol.dao;
 
 import com.sellcontrol.db.DatabaseManager;
 import com.sellcontrol.model.AuditLog;
+import com.sellcontrol.model.FiltroAuditoria;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
- * Data Access Object para registros de auditoría.
+ * Data Access Object para registros de auditoría. La tabla es de solo
+ * inserción y cada registro queda encadenado al anterior por hash (ver
+ * CadenaAuditoria).
  */
 public class AuditLogDAO {
 
+    private static final String SQL_INSERT = "INSERT INTO audit_log (usuario_id, accion, entidad, entidad_id, fecha_hora, hash) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String SQL_PAGINA = "SELECT a.id, a.usuario_id, a.accion, a.entidad, a.entidad_id, "
+            + "a.fecha_hora, u.nombre AS nombre_usuario FROM audit_log a "
+            + "LEFT JOIN usuarios u ON u.id = a.usuario_id WHERE a.id < ? AND a.id > ?";
     /**
-     * Registra una acción en el log de auditoría.
+     * Registra una acción en el log de auditoría. No espera a la base de
+     * datos: el registro se guarda en segundo plano, por lotes (ver
+     * EscritorAuditoria), con la fecha y hora en que se inserta.
      */
     public void insert(AuditLog log) {
-        String sql = "INSERT INTO audit_log (usuario_id, accion, entidad, entidad_id) VALUES (?, ?, ?, ?)";
+        EscritorAuditoria.getInstance().encolar(log);
+    }
+
+    /**
+     * Registra una acción usando la conexión (y transacción) del llamador.
+     */
+    public void insert(Connection conn, AuditLog log) throws SQLException {
+        log.setFechaHora(fechaParaInsertar(conn));
+        try (PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
+            bind(ps, log, CadenaAuditoria.encadenar(CadenaAuditoria.ultimoHash(conn), log));
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Registra varias acciones en batch usando la conexión (y transacción) del
+     * llamador.
+     */
+    public void insertBatch(Connection conn, List<AuditLog> logs) throws SQLException {
+        byte[] hash = CadenaAuditoria.ultimoHash(conn);
+        String fecha = fechaParaInsertar(conn);
+        try (PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
+            for (AuditLog log : logs) {
+                log.setFechaHora(fecha);
+                hash = CadenaAuditoria.encadenar(hash, log);
+                bind(ps, log, hash);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Una página de la auditoría, del registro más nuevo al más viejo
+     * (paginación por clave: WHERE id < ? ORDER BY id DESC LIMIT ?).
+     *
+     * Cada página cuesta lo mismo sin importar cuántas se hayan leído antes.
+     * El rango de fechas se traduce primero a un rango de ids (dos búsquedas
+     * en el índice de fecha_hora), así la consulta recorre id hacia atrás por
+     * la clave primaria o por el índice del filtro (usuario, acción, entidad),
+     * que en SQLite ya termina en id, sin ordenar nada. La traducción es
+     * exacta porque fecha_hora se fija al insertar y nunca retrocede (ver
+     * fechaParaInsertar), así que fecha e id crecen juntos.
+     *
+     * @param antesDeId id del último registro de la página anterior, o
+     *                  Long.MAX_VALUE para la primera página.
+     * @return hasta 'limite' registros, o lista vacía si no hay más o hay error.
+     */
+    public List<AuditLog> buscarPagina(FiltroAuditoria filtro, long antesDeId, int limite) {
+        List<AuditLog> lista = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            long hastaId = antesDeId;
+            long desdeId = 0;
+            if (filtro.hasta() != null) {
+                String fin = RangoFechas.finExclusivo(filtro.hasta());
+                long id = idEnFecha(conn, "SELECT id FROM audit_log WHERE fecha_hora < ? "
+                        + "ORDER BY fecha_hora DESC, id DESC LIMIT 1", fin);
+                if (id < 0) {
+                    return lista;
+                }
+                hastaId = Math.min(hastaId, id + 1);
+            }
+            if (filtro.desde() != null) {
+                String inicio = RangoFechas.inicio(filtro.desde());
+                long id = idEnFecha(conn, "SELECT id FROM audit_log WHERE fecha_hora >= ? "
+                        + "ORDER BY fecha_hora, id LIMIT 1", inicio);
+                if (id < 0) {
+                    return lista;
+                }
+                desdeId = id - 1;
+            }
+
+            StringBuilder sql = new StringBuilder(SQL_PAGINA);
+            List<Object> parametros = new ArrayList<>();
+            parametros.add(hastaId);
+            parametros.add(desdeId);
+            if (filtro.usuarioId() != null) {
+                sql.append(" AND a.usuario_id = ?");
+                parametros.add(filtro.usuarioId());
+            }
+            if (filtro.accion() != null) {
+                sql.append(" AND a.accion = ?");
+                parametros.add(filtro.accion());
+            }
+            if (filtro.entidad() != null) {
+                sql.append(" AND a.entidad = ?");
+                parametros.add(filtro.entidad());
+            }
+            if (filtro.desde() != null) {
+                // '+' evita que SQLite recorra el índice de fecha y luego ordene
+                sql.append(" AND +a.fecha_hora >= ?");
+                parametros.add(RangoFechas.inicio(filtro.desde()));
+            }
+            if (filtro.hasta() != null) {
+                sql.append(" AND +a.fecha_hora < ?");
+                parametros.add(RangoFechas.finExclusivo(filtro.hasta()));
+            }
+            sql.append(" ORDER BY a.id DESC LIMIT ?");
+            parametros.add(limite);
+
+            try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < parametros.size(); i++) {
+                    ps.setObject(i + 1, parametros.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        lista.add(mapRow(rs));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("[AuditLogDAO] Error en buscarPagina: " + e.getMessage());
+        }
+        return lista;
+    }
+
+    /** @return el id encontrado, o -1 si la consulta no devolvió filas. */
+    private long idEnFecha(Connection conn, String sql, String fecha) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, fecha);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        }
+    }
+
+    /** Acciones registradas, ordenadas, para los filtros de la pantalla. */
+    public List<String> listarAcciones() {
+        return valoresDistintos("accion");
+    }
+
+    /** Entidades registradas, ordenadas, para los filtros de la pantalla. */
+    public List<String> listarEntidades() {
+        return valoresDistintos("entidad");
+    }
+
+    /**
+     * Valores distintos de una columna indexada saltando por el índice (un
+     * MIN por valor) en lugar de recorrer toda la tabla.
+     */
+    private List<String> valoresDistintos(String columna) {
+        String sql = "WITH RECURSIVE v(x) AS (SELECT MIN(" + columna + ") FROM audit_log "
+                + "UNION ALL SELECT (SELECT MIN(" + columna + ") FROM audit_log WHERE " + columna + " > v.x) "
+                + "FROM v WHERE v.x IS NOT NULL) SELECT x FROM v WHERE x IS NOT NULL";
+        List<String> valores = new ArrayList<>();
         try (Connection conn = DatabaseManager.getInstance().getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, log.getUsuarioId());
-            ps.setString(2, log.getAccion());
-            ps.setString(3, log.getEntidad());
-            if (log.getEntidadId() != null) {
-                ps.setInt(4, log.getEntidadId());
-            } else {
-                ps.setNull(4, Types.INTEGER);
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                valores.add(rs.getString(1));
             }
-            ps.executeUpdate();
         } catch (SQLException e) {
-            System.err.println("[AuditLogDAO] Error al registrar auditoría: " + e.getMessage());
+            System.err.println("[AuditLogDAO] Error en valoresDistintos(" + columna + "): " + e.getMessage());
+        }
+        return valores;
+    }
+
+    /**
+     * Verifica que la cadena de hashes de la auditoría esté íntegra.
+     *
+     * @param completa true recalcula todos los registros; false solo los
+     *                 escritos desde el último checkpoint (segundos aun con
+     *                 millones de registros).
+     * @return null si está íntegra, o la descripción del problema.
+     */
+    public String verificarIntegridad(boolean completa) {
+        try {
+            String problema = CadenaAuditoria.verificar(completa);
+            if (problema != null) {
+                System.err.println("[AuditLogDAO] ALERTA: la auditoría fue alterada: " + problema);
+            }
+            return problema;
+        } catch (SQLException e) {
+            System.err.println("[AuditLogDAO] Error en verificarIntegridad: " + e.getMessage());
+            return "Error al verificar la auditoría: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Mantenimiento al arrancar, en un hilo aparte ("audit-maintenance") para
+     * no demorar el inicio: cuenta los usuarios de los archivos que no se
+     * contaron al archivar, verificación rápida de la cadena y, si está
+     * íntegra, retención (archivarAntiguos).
+     */
+    public void mantenimientoEnFondo() {
+        Thread t = new Thread(() -> {
+            try {
+                ArchivoAuditoria.contarUsuariosPendientes();
+            } catch (SQLException e) {
+                System.err.println("[AuditLogDAO] Error al contar usuarios archivados: " + e.getMessage());
+            }
+            if (verificarIntegridad(false) == null) {
+                archivarAntiguos();
+            }
+        }, "audit-maintenance");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Pasa al archivo comprimido (ver ArchivoAuditoria) los registros con más
+     * días que 'auditoria_retencion_dias' y los borra de la base.
+     *
+     * @return cuántos registros se archivaron, o -1 si hubo error.
+     */
+    public int archivarAntiguos() {
+        int dias = DatabaseManager.getInstance().getAuditoriaRetencionDias();
+        if (dias <= 0) {
+            return 0;
+        }
+        try {
+            long inicio = System.nanoTime();
+            int archivados = ArchivoAuditoria.archivar(dias);
+            if (archivados > 0) {
+                System.out.println("[AuditLogDAO] " + archivados + " registro(s) de más de " + dias
+                        + " días archivados en " + (System.nanoTime() - inicio) / 1_000_000 + " ms.");
+            }
+            return archivados;
+        } catch (SQLException | IOException e) {
+            System.err.println("[AuditLogDAO] Error en archivarAntiguos: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Una página de la auditoría archivada, con la misma paginación que
+     * buscarPagina (del más nuevo al más viejo, continuando desde antesDeId).
+     *
+     * @return hasta 'limite' registros, o lista vacía si no hay más o hay error.
+     */
+    public List<AuditLog> buscarPaginaArchivada(FiltroAuditoria filtro, long antesDeId, int limite) {
+        try {
+            return ArchivoAuditoria.pagina(filtro, antesDeId, limite);
+        } catch (SQLException | UncheckedIOException e) {
+            System.err.println("[AuditLogDAO] Error en buscarPaginaArchivada: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Stream de la auditoría archivada que cumple el filtro, en orden de id,
+     * descomprimida a medida que se lee. Debe cerrarse (try-with-resources).
+     * Un error de lectura de un archivo llega como UncheckedIOException.
+     *
+     * @throws SQLException si no se pudo leer la lista de archivos.
+     */
+    public Stream<AuditLog> streamArchivados(FiltroAuditoria filtro) throws SQLException {
+        return ArchivoAuditoria.leer(filtro);
+    }
+
+    /**
+     * Fecha y hora para los registros que se van a insertar con 'conn'. Se
+     * toma al insertar, con la conexión en préstamo (y no al encolar), y nunca
+     * es anterior a la del último registro aunque el reloj retroceda: así el
+     * orden de fecha_hora es el mismo que el de id. La fecha forma parte del
+     * hash, así que se fija antes de encadenar.
+     */
+    private String fechaParaInsertar(Connection conn) throws SQLException {
+        String ahora = LocalDateTime.now().format(FORMATO_FECHA);
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT fecha_hora FROM audit_log ORDER BY id DESC LIMIT 1")) {
+            String ultima = rs.next() ? rs.getString(1) : null;
+            return ultima != null && ultima.compareTo(ahora) > 0 ? ultima : ahora;
         }
     }
+
+    private void bind(PreparedStatement ps, AuditLog log, byte[] hash) throws SQLException {
+        ps.setInt(1, log.getUsuarioId());
+        ps.setString(2, log.getAccion());
+        ps.setString(3, log.getEntidad());
+        if (log.getEntidadId() != null) {
+            ps.setInt(4, log.getEntidadId());
+        } else {
+            ps.setNull(4, Types.INTEGER);
+        }
+        ps.setString(5, log.getFechaHora());
+        ps.setBytes(6, hash);
+    }
+
+    private AuditLog mapRow(ResultSet rs) throws SQLException {
+        AuditLog log = new AuditLog();
+        log.setId(rs.getInt("id"));
+        log.setUsuarioId(rs.getInt("usuario_id"));
+        log.setAccion(rs.getString("accion"));
+        log.setEntidad(rs.getString("entidad"));
+        int entidadId = rs.getInt("entidad_id");
+        log.setEntidadId(rs.wasNull() ? null : entidadId);
+        log.setFechaHora(rs.getString("fecha_hora"));
+        log.setNombreUsuario(rs.getString("nombre_usuario"));
+        return log;
+    }
 }
@@ -0,0 +1,331 @@
+package com.sellcontrol.dao;
+
+import com.sellcontrol.config.AppPaths;
+import com.sellcontrol.db.DatabaseManager;
+import com.sellcontrol.model.AuditLog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cadena de hashes de audit_log. Cada registro guarda
+ * SHA-256(hash anterior + sus campos), así que editar o borrar uno rompe la
+ * cadena desde ahí. Las tablas además rechazan UPDATE y DELETE (triggers de
+ * la migración 4).
+ *
+ * Cada CADA_CHECKPOINT registros el escritor de auditoría guarda un
+ * checkpoint (último id y su hash) en audit_checkpoint y una copia en
+ * logs/audit-anclas.log, fuera de la base. La verificación normal solo
+ * recalcula lo escrito desde el último checkpoint y compara los checkpoints
+ * con sus filas y con las anclas; la completa recalcula toda la cadena.
+ *
+ * Los registros anteriores a la migración 4 no tienen hash: la cadena empieza
+ * en el primero que sí lo tiene. Los registros ya archivados (ver
+ * ArchivoAuditoria) siguen la cadena dentro de los archivos; audit_archivo
+ * guarda el hash del último, del que continúa la base.
+ */
+final class CadenaAuditoria {
+
+    static final int CADA_CHECKPOINT = 1000;
+    private static final int FILAS_POR_PAGINA = 5000;
+    static final byte[] GENESIS = new byte[32];
+    private static final String ANCLAS = "audit-anclas.log";
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /** Último registro de un checkpoint (o del archivo) y su hash. */
+    record Checkpoint(long hastaId, byte[] hash) {
+    }
+
+    private CadenaAuditoria() {
+    }
+
+    /**
+     * Hash del último registro, o el génesis si aún no hay registros con
+     * hash. Debe llamarse dentro de la transacción que va a insertar.
+     */
+    static byte[] ultimoHash(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT hash FROM audit_log ORDER BY id DESC LIMIT 1")) {
+            byte[] hash = rs.next() ? rs.getBytes(1) : null;
+            return hash != null ? hash : GENESIS;
+        }
+    }
+
+    /** Hash de un registro encadenado al anterior. */
+    static byte[] encadenar(byte[] anterior, AuditLog log) {
+        return encadenar(anterior, log.getUsuarioId(), log.getAccion(), log.getEntidad(), log.getEntidadId(),
+                log.getFechaHora());
+    }
+
+    private static byte[] encadenar(byte[] anterior, int usuarioId, String accion, String entidad,
+            Integer entidadId, String fechaHora) {
+        MessageDigest sha = sha256();
+        sha.update(anterior);
+        // Separador de unidad (0x1F) para que los límites entre campos no sean ambiguos
+        String campos = usuarioId + "\u001F" + accion + "\u001F" + entidad + "\u001F"
+                + (entidadId != null ? entidadId : "") + "\u001F" + fechaHora;
+        sha.update(campos.getBytes(StandardCharsets.UTF_8));
+        return sha.digest();
+    }
+
+    /**
+     * Guarda un checkpoint si desde el anterior se escribieron al menos
+     * CADA_CHECKPOINT registros. Va en la misma transacción que el lote.
+     *
+     * @return el checkpoint guardado, o null si no correspondía.
+     */
+    static Checkpoint checkpointSiCorresponde(Connection conn) throws SQLException {
+        long ultimoId;
+        byte[] hash;
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT id, hash FROM audit_log ORDER BY id DESC LIMIT 1")) {
+            if (!rs.next() || rs.getBytes(2) == null) {
+                return null;
+            }
+            ultimoId = rs.getLong(1);
+            hash = rs.getBytes(2);
+        }
+        if (ultimoId - ultimoCheckpointId(conn) < CADA_CHECKPOINT) {
+            return null;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO audit_checkpoint (hasta_id, hash, fecha_hora) VALUES (?, ?, ?)")) {
+            ps.setLong(1, ultimoId);
+            ps.setBytes(2, hash);
+            ps.setString(3, LocalDateTime.now().format(FORMATO_FECHA));
+            ps.executeUpdate();
+        }
+        return new Checkpoint(ultimoId, hash);
+    }
+
+    private static long ultimoCheckpointId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(hasta_id), 0) FROM audit_checkpoint")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Copia el checkpoint, ya confirmado en la base, al archivo de anclas. Una
+     * cadena reescrita entera dentro de la base no coincidiría con él.
+     */
+    static void anclar(Checkpoint checkpoint) {
+        String linea = checkpoint.hastaId() + " " + HexFormat.of().formatHex(checkpoint.hash()) + " "
+                + LocalDateTime.now().format(FORMATO_FECHA) + System.lineSeparator();
+        try {
+            Files.createDirectories(AppPaths.getLogsDir());
+            Files.writeString(AppPaths.getLogsDir().resolve(ANCLAS), linea, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        } catch (IOException e) {
+            System.err.println("[Auditoria] Error al guardar el ancla del checkpoint " + checkpoint.hastaId()
+                    + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Verifica la cadena.
+     *
+     * @param completa true recalcula todos los registros; false solo los
+     *                 escritos desde el último checkpoint.
+     * @return null si está íntegra, o la descripción del primer problema.
+     */
+    static String verificar(boolean completa) throws SQLException {
+        long inicio = System.nanoTime();
+        DatabaseManager db = DatabaseManager.getInstance();
+
+        // 1. Checkpoints contra sus filas (una búsqueda por clave cada uno); los
+        //    de registros ya archivados se comprueban en los archivos
+        Map<Long, byte[]> checkpoints = new HashMap<>();
+        long desdeId = 0;
+        byte[] anterior = GENESIS;
+        Checkpoint archivado;
+        try (Connection conn = db.getConnection()) {
+            archivado = ultimoArchivado(conn);
+            long archivadoHasta = archivado != null ? archivado.hastaId() : 0;
+            try (Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT c.hasta_id, c.hash, a.hash FROM audit_checkpoint c "
+                            + "LEFT JOIN audit_log a ON a.id = c.hasta_id ORDER BY c.hasta_id")) {
+                while (rs.next()) {
+                    long hastaId = rs.getLong(1);
+                    byte[] hash = rs.getBytes(2);
+                    if (hastaId > archivadoHasta && !Arrays.equals(hash, rs.getBytes(3))) {
+                        return "el registro #" + hastaId + " no coincide con su checkpoint";
+                    }
+                    checkpoints.put(hastaId, hash);
+                    desdeId = hastaId;
+                    anterior = hash;
+                }
+            }
+        }
+
+        // 2. Anclas fuera de la base contra los checkpoints
+        String error = verificarAnclas(checkpoints);
+        if (error != null) {
+            return error;
+        }
+
+        // 3. Recalcular la cadena (completa, o desde el último checkpoint); lo
+        //    que queda en la base sigue desde el último registro archivado
+        if (completa) {
+            error = ArchivoAuditoria.verificar();
+            if (error != null) {
+                return error;
+            }
+        }
+        if (completa || desdeId == 0) {
+            desdeId = primerIdConHash(db) - 1;
+            anterior = GENESIS;
+        }
+        if (archivado != null && archivado.hastaId() >= desdeId) {
+            desdeId = archivado.hastaId();
+            anterior = archivado.hash() != null ? archivado.hash() : GENESIS;
+        }
+        long revisados = 0;
+        while (true) {
+            int enPagina = 0;
+            try (Connection conn = db.getConnection();
+                    PreparedStatement ps = conn.prepareStatement("SELECT id, usuario_id, accion, entidad, "
+                            + "entidad_id, fecha_hora, hash FROM audit_log WHERE id > ? ORDER BY id LIMIT ?")) {
+                ps.setLong(1, desdeId);
+                ps.setInt(2, FILAS_POR_PAGINA);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long id = rs.getLong(1);
+                        int entidadId = rs.getInt(5);
+                        Integer idEntidad = rs.wasNull() ? null : entidadId;
+                        byte[] esperado = encadenar(anterior, rs.getInt(2), rs.getString(3), rs.getString(4),
+                                idEntidad, rs.getString(6));
+                        byte[] guardado = rs.getBytes(7);
+                        if (!Arrays.equals(esperado, guardado)) {
+                            return "la cadena se rompe en el registro #" + id;
+                        }
+                        byte[] enCheckpoint = checkpoints.get(id);
+                        if (enCheckpoint != null && !Arrays.equals(enCheckpoint, guardado)) {
+                            return "el registro #" + id + " no coincide con su checkpoint";
+                        }
+                        anterior = guardado;
+                        desdeId = id;
+                        enPagina++;
+                    }
+                }
+            }
+            revisados += enPagina;
+            if (enPagina < FILAS_POR_PAGINA) {
+                break;
+            }
+        }
+        System.out.printf("[Auditoria] Cadena verificada (%s): %d checkpoint(s), %d registro(s) recalculados en %d ms.%n",
+                completa ? "completa" : "desde el último checkpoint", checkpoints.size(), revisados,
+                (System.nanoTime() - inicio) / 1_000_000);
+
+        // 4. Con la cadena íntegra, anclar los checkpoints que quedaron sin ancla
+        //    (un corte entre el commit del lote y anclar())
+        anclarPendientes(checkpoints);
+        return null;
+    }
+
+    /**
+     * Agrega al archivo de anclas los checkpoints posteriores a la última
+     * ancla. Si el escritor ancla el mismo checkpoint a la vez, queda una
+     * línea repetida, que coincide igual.
+     */
+    private static void anclarPendientes(Map<Long, byte[]> checkpoints) {
+        long ultimaAncla = 0;
+        Path archivo = AppPaths.getLogsDir().resolve(ANCLAS);
+        if (Files.exists(archivo)) {
+            try {
+                for (String linea : Files.readAllLines(archivo, StandardCharsets.UTF_8)) {
+                    String[] partes = linea.split(" ");
+                    if (partes.length >= 2) {
+                        ultimaAncla = Math.max(ultimaAncla, Long.parseLong(partes[0]));
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("[Auditoria] No se pudo leer " + archivo + ": " + e.getMessage());
+                return;
+            }
+        }
+        long desde = ultimaAncla;
+        List<Long> pendientes = checkpoints.keySet().stream().filter(id -> id > desde).sorted().toList();
+        for (long hastaId : pendientes) {
+            anclar(new Checkpoint(hastaId, checkpoints.get(hastaId)));
+        }
+        if (!pendientes.isEmpty()) {
+            System.out.println("[Auditoria] " + pendientes.size() + " checkpoint(s) sin ancla, anclados de nuevo.");
+        }
+    }
+
+    private static Checkpoint ultimoArchivado(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(
+                        "SELECT hasta_id, hash FROM audit_archivo ORDER BY hasta_id DESC LIMIT 1")) {
+            return rs.next() ? new Checkpoint(rs.getLong(1), rs.getBytes(2)) : null;
+        }
+    }
+
+    private static long primerIdConHash(DatabaseManager db) throws SQLException {
+        try (Connection conn = db.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(
+                        "SELECT id FROM audit_log WHERE hash IS NOT NULL ORDER BY id LIMIT 1")) {
+            return rs.next() ? rs.getLong(1) : Long.MAX_VALUE;
+        }
+    }
+
+    private static String verificarAnclas(Map<Long, byte[]> checkpoints) {
+        Path archivo = AppPaths.getLogsDir().resolve(ANCLAS);
+        if (!Files.exists(archivo)) {
+            // Como un checkpoint sin ancla: anclarPendientes lo vuelve a crear
+            return null;
+        }
+        List<String> lineas;
+        try {
+            lineas = Files.readAllLines(archivo, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "no se pudo leer " + archivo + ": " + e.getMessage();
+        }
+        for (String linea : lineas) {
+            String[] partes = linea.split(" ");
+            if (partes.length < 2) {
+                continue;
+            }
+            long hastaId;
+            byte[] hash;
+            try {
+                hastaId = Long.parseLong(partes[0]);
+                hash = HexFormat.of().parseHex(partes[1]);
+            } catch (IllegalArgumentException e) {
+                return "línea inválida en " + archivo.getFileName() + ": " + linea;
+            }
+            if (!Arrays.equals(hash, checkpoints.get(hastaId))) {
+                return "el checkpoint del registro #" + hastaId + " no coincide con su ancla";
+            }
+        }
+        return null;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
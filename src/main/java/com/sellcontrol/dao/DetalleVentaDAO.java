@@ -35,6 +35,27 @@ public class DetalleVentaDAO {
         return -1;
     }
 
+    /**
+     * Inserta todas las líneas de una venta en un solo batch JDBC, usando la
+     * conexión (y transacción) del llamador. Cada detalle debe tener ventaId.
+     *
+     * @throws SQLException si falla cualquier línea.
+     */
+    public void insertBatch(Connection conn, List<DetalleVenta> detalles) throws SQLException {
+        String sql = "INSERT INTO detalle_venta (venta_id, producto_id, cantidad, tipo_unidad, subtotal) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (DetalleVenta dv : detalles) {
+                ps.setInt(1, dv.getVentaId());
+                ps.setInt(2, dv.getProductoId());
+                ps.setDouble(3, dv.getCantidad());
+                ps.setString(4, dv.getTipoUnidad());
+                ps.setDouble(5, dv.getSubtotal());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
     /**
      * Retorna los detalles de una venta específica.
      */
@@ -0,0 +1,175 @@
+package com.sellcontrol.dao;
+
+import com.sellcontrol.db.DatabaseManager;
+import com.sellcontrol.model.AuditLog;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Escribe la auditoría en segundo plano ("audit-writer"), para que login,
+ * cobros, movimientos de caja o ediciones no esperen un commit (y su fsync)
+ * propio solo por el registro de auditoría.
+ *
+ * Los registros se juntan en una cola acotada y se guardan por lotes en una
+ * sola transacción: cuando pasan INTERVALO_MS desde el primero pendiente o
+ * cuando hay LOTE_MAXIMO. La fecha se toma al escribir, no al encolar, para
+ * que fecha_hora siga el orden de id (ver AuditLogDAO.buscarPagina). Si la
+ * cola se llena (la base no da abasto) quien audita espera lugar en lugar de
+ * perder el registro. Al cerrar la base se escribe lo pendiente.
+ *
+ * Al ser el único hilo que escribe lotes, también es quien guarda los
+ * checkpoints de la cadena de hashes (ver CadenaAuditoria).
+ */
+final class EscritorAuditoria {
+
+    private static final int CAPACIDAD = 10_000;
+    private static final int LOTE_MAXIMO = 200;
+    private static final long INTERVALO_MS = 250;
+    private static final int INTENTOS = 3;
+
+    private static final EscritorAuditoria INSTANCE = new EscritorAuditoria();
+
+    private final BlockingQueue<AuditLog> cola = new ArrayBlockingQueue<>(CAPACIDAD);
+    private final AuditLogDAO dao = new AuditLogDAO();
+    private Thread hilo;
+    private volatile boolean cerrado;
+    /**
+     * encolar() mira 'cerrado' y encola con el lock de lectura; vaciar() marca
+     * el cierre con el de escritura. Así ningún registro entra a la cola
+     * después de que vaciar() la vació.
+     */
+    private final ReadWriteLock cierre = new ReentrantReadWriteLock();
+
+    private EscritorAuditoria() {
+    }
+
+    static EscritorAuditoria getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Encola un registro. Solo espera si la cola está llena; después del
+     * cierre lo escribe directamente.
+     */
+    void encolar(AuditLog log) {
+        iniciar();
+        cierre.readLock().lock();
+        try {
+            if (!cerrado) {
+                cola.put(log);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            cierre.readLock().unlock();
+        }
+        escribir(List.of(log));
+    }
+
+    private synchronized void iniciar() {
+        if (hilo != null) {
+            return;
+        }
+        hilo = new Thread(this::trabajar, "audit-writer");
+        hilo.setDaemon(true);
+        hilo.start();
+        DatabaseManager.getInstance().alCerrar(this::vaciar);
+    }
+
+    private void trabajar() {
+        List<AuditLog> lote = new ArrayList<>(LOTE_MAXIMO);
+        while (!cerrado) {
+            try {
+                AuditLog primero = cola.take();
+                lote.add(primero);
+                // Junta lo que llegue durante el intervalo, hasta llenar el lote
+                long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(INTERVALO_MS);
+                while (lote.size() < LOTE_MAXIMO) {
+                    long resta = limite - System.nanoTime();
+                    AuditLog siguiente = resta > 0 ? cola.poll(resta, TimeUnit.NANOSECONDS) : null;
+                    if (siguiente == null) {
+                        break;
+                    }
+                    lote.add(siguiente);
+                    cola.drainTo(lote, LOTE_MAXIMO - lote.size());
+                }
+            } catch (InterruptedException e) {
+                // vaciar() escribe lo que haya quedado
+            }
+            escribir(lote);
+            lote.clear();
+        }
+    }
+
+    /**
+     * Detiene el hilo y escribe lo pendiente. Se llama desde
+     * DatabaseManager.close(), antes de cerrar la conexión.
+     */
+    private void vaciar() {
+        // Espera a los encolar() en curso (put puede esperar lugar: el hilo
+        // sigue sacando hasta que se marque el cierre)
+        cierre.writeLock().lock();
+        try {
+            cerrado = true;
+        } finally {
+            cierre.writeLock().unlock();
+        }
+        Thread t = hilo;
+        if (t != null) {
+            t.interrupt();
+            try {
+                t.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<AuditLog> pendientes = new ArrayList<>();
+        cola.drainTo(pendientes);
+        if (!pendientes.isEmpty()) {
+            escribir(pendientes);
+            System.out.println("[Auditoria] " + pendientes.size() + " registro(s) pendientes escritos al cerrar.");
+        }
+    }
+
+    /**
+     * Guarda el lote en una transacción, junto con el checkpoint de la cadena
+     * si corresponde; si falla lo reintenta un par de veces.
+     */
+    private void escribir(List<AuditLog> lote) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        for (int intento = 1; intento <= INTENTOS; intento++) {
+            try {
+                CadenaAuditoria.Checkpoint checkpoint = DatabaseManager.getInstance().inTransaction(conn -> {
+                    dao.insertBatch(conn, lote);
+                    return CadenaAuditoria.checkpointSiCorresponde(conn);
+                });
+                if (checkpoint != null) {
+                    CadenaAuditoria.anclar(checkpoint);
+                }
+                return;
+            } catch (SQLException e) {
+                System.err.println("[Auditoria] Error al guardar " + lote.size() + " registro(s) (intento "
+                        + intento + "): " + e.getMessage());
+                try {
+                    Thread.sleep(INTERVALO_MS * intento);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        for (AuditLog log : lote) {
+            System.err.println("[Auditoria] Registro perdido: " + log.getAccion() + " " + log.getEntidad() + " #"
+                    + log.getEntidadId() + " usuario " + log.getUsuarioId() + " " + log.getFechaHora());
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.sellcontrol.model.Gasto;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class GastoDAO {
 
@@ -29,12 +30,16 @@ public class GastoDAO {
 
     public List<Gasto> findHoy() {
         List<Gasto> list = new ArrayList<>();
-        String sql = "SELECT * FROM gastos WHERE DATE(fecha_hora) = DATE('now','localtime') ORDER BY fecha_hora DESC";
+        String sql = "SELECT * FROM gastos WHERE fecha_hora >= ? AND fecha_hora < ? ORDER BY fecha_hora DESC";
+        String hoy = RangoFechas.hoy();
         try (Connection conn = DatabaseManager.getInstance().getConnection();
-                Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next())
-                list.add(mapRow(rs));
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, RangoFechas.inicio(hoy));
+            ps.setString(2, RangoFechas.finExclusivo(hoy));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    list.add(mapRow(rs));
+            }
         } catch (SQLException e) {
             System.err.println("[GastoDAO] Error en findHoy: " + e.getMessage());
         }
@@ -43,11 +48,11 @@ public class GastoDAO {
 
     public List<Gasto> findByRango(String desde, String hasta) {
         List<Gasto> list = new ArrayList<>();
-        String sql = "SELECT * FROM gastos WHERE DATE(fecha_hora) BETWEEN ? AND ? ORDER BY fecha_hora DESC";
+        String sql = "SELECT * FROM gastos WHERE fecha_hora >= ? AND fecha_hora < ? ORDER BY fecha_hora DESC";
         try (Connection conn = DatabaseManager.getInstance().getConnection();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, desde);
-            ps.setString(2, hasta);
+            ps.setString(1, RangoFechas.inicio(desde));
+            ps.setString(2, RangoFechas.finExclusivo(hasta));
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next())
                     list.add(mapRow(rs));
@@ -58,6 +63,46 @@ public class GastoDAO {
         return list;
     }
 
+    /**
+     * Recorre las filas del rango (más nuevas primero) por lotes, sin juntarlas
+     * en una lista. La conexión se suelta entre lotes y el consumidor corre
+     * sin ella, así que puede ser lento sin frenar las ventas.
+     *
+     * @return false si hubo error.
+     */
+    public boolean forEachInRange(String desde, String hasta, Consumer<Gasto> consumer) {
+        String sql = "SELECT * FROM gastos WHERE fecha_hora >= ? AND fecha_hora < ? AND (fecha_hora, id) < (?, ?) " +
+                "ORDER BY fecha_hora DESC, id DESC LIMIT ?";
+        try {
+            RecorridoPorLotes.recorrer(sql, desde, hasta, this::mapRow, Gasto::getFechaHora, Gasto::getId, consumer);
+            return true;
+        } catch (SQLException e) {
+            System.err.println("[GastoDAO] Error en forEachInRange: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Suma del monto del rango, calculada en SQLite.
+     *
+     * @return la suma, o -1 si hubo error.
+     */
+    public double sumByRango(String desde, String hasta) {
+        String sql = "SELECT COALESCE(SUM(monto), 0) FROM gastos WHERE fecha_hora >= ? AND fecha_hora < ?";
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, RangoFechas.inicio(desde));
+            ps.setString(2, RangoFechas.finExclusivo(hasta));
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next())
+                    return rs.getDouble(1);
+            }
+        } catch (SQLException e) {
+            System.err.println("[GastoDAO] Error en sumByRango: " + e.getMessage());
+        }
+        return -1;
+    }
+
     private Gasto mapRow(ResultSet rs) throws SQLException {
         Gasto g = new Gasto();
         g.setId(rs.getInt("id"));
@@ -6,6 +6,7 @@ import com.sellcontrol.model.Merma;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class MermaDAO {
 
@@ -28,12 +29,16 @@ public class MermaDAO {
 
     public List<Merma> findHoy() {
         List<Merma> list = new ArrayList<>();
-        String sql = "SELECT * FROM mermas WHERE DATE(fecha_hora) = DATE('now','localtime') ORDER BY fecha_hora DESC";
+        String sql = "SELECT * FROM mermas WHERE fecha_hora >= ? AND fecha_hora < ? ORDER BY fecha_hora DESC";
+        String hoy = RangoFechas.hoy();
         try (Connection conn = DatabaseManager.getInstance().getConnection();
-                Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next())
-                list.add(mapRow(rs));
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, RangoFechas.inicio(hoy));
+            ps.setString(2, RangoFechas.finExclusivo(hoy));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    list.add(mapRow(rs));
+            }
         } catch (SQLException e) {
             System.err.println("[MermaDAO] Error en findHoy: " + e.getMessage());
         }
@@ -42,11 +47,11 @@ public class MermaDAO {
 
     public List<Merma> findByRango(String desde, String hasta) {
         List<Merma> list = new ArrayList<>();
-        String sql = "SELECT * FROM mermas WHERE DATE(fecha_hora) BETWEEN ? AND ? ORDER BY fecha_hora DESC";
+        String sql = "SELECT * FROM mermas WHERE fecha_hora >= ? AND fecha_hora < ? ORDER BY fecha_hora DESC";
         try (Connection conn = DatabaseManager.getInstance().getConnection();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, desde);
-            ps.setString(2, hasta);
+            ps.setString(1, RangoFechas.inicio(desde));
+            ps.setString(2, RangoFechas.finExclusivo(hasta));
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next())
                     list.add(mapRow(rs));
@@ -57,6 +62,46 @@ public class MermaDAO {
         return list;
     }
 
+    /**
+     * Recorre las filas del rango (más nuevas primero) por lotes, sin juntarlas
+     * en una lista. La conexión se suelta entre lotes y el consumidor corre
+     * sin ella, así que puede ser lento sin frenar las ventas.
+     *
+     * @return false si hubo error.
+     */
+    public boolean forEachInRange(String desde, String hasta, Consumer<Merma> consumer) {
+        String sql = "SELECT * FROM mermas WHERE fecha_hora >= ? AND fecha_hora < ? AND (fecha_hora, id) < (?, ?) " +
+                "ORDER BY fecha_hora DESC, id DESC LIMIT ?";
+        try {
+            RecorridoPorLotes.recorrer(sql, desde, hasta, this::mapRow, Merma::getFechaHora, Merma::getId, consumer);
+            return true;
+        } catch (SQLException e) {
+            System.err.println("[MermaDAO] Error en forEachInRange: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Suma del monto aproximado del rango, calculada en SQLite.
+     *
+     * @return la suma, o -1 si hubo error.
+     */
+    public double sumByRango(String desde, String hasta) {
+        String sql = "SELECT COALESCE(SUM(monto_aproximado), 0) FROM mermas WHERE fecha_hora >= ? AND fecha_hora < ?";
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, RangoFechas.inicio(desde));
+            ps.setString(2, RangoFechas.finExclusivo(hasta));
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next())
+                    return rs.getDouble(1);
+            }
+        } catch (SQLException e) {
+            System.err.println("[MermaDAO] Error en sumByRango: " + e.getMessage());
+        }
+        return -1;
+    }
+
     private Merma mapRow(ResultSet rs) throws SQLException {
         Merma m = new Merma();
         m.setId(rs.getInt("id"));
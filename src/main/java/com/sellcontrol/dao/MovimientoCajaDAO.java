@@ -10,9 +10,23 @@ import java.util.List;
 public class MovimientoCajaDAO {
 
     public int insert(MovimientoCaja m) {
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            return insert(conn, m);
+        } catch (SQLException e) {
+            System.err.println("[MovimientoCajaDAO] Error en insert: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    /**
+     * Inserta un movimiento usando la conexión (y transacción) del llamador.
+     *
+     * @return el ID generado.
+     * @throws SQLException si falla, para que la transacción haga rollback.
+     */
+    public int insert(Connection conn, MovimientoCaja m) throws SQLException {
         String sql = "INSERT INTO movimientos_caja (tipo, monto, motivo, usuario_id) VALUES (?, ?, ?, ?)";
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, m.getTipo());
             ps.setDouble(2, m.getMonto());
             ps.setString(3, m.getMotivo());
@@ -22,22 +36,24 @@ public class MovimientoCajaDAO {
                 if (keys.next())
                     return keys.getInt(1);
             }
-        } catch (SQLException e) {
-            System.err.println("[MovimientoCajaDAO] Error en insert: " + e.getMessage());
         }
-        return -1;
+        throw new SQLException("No se obtuvo el ID del movimiento insertado.");
     }
 
     public List<MovimientoCaja> findHoy() {
         List<MovimientoCaja> list = new ArrayList<>();
         String sql = "SELECT mc.*, u.nombre AS nombre_usuario FROM movimientos_caja mc JOIN usuarios u ON mc.usuario_id = u.id "
                 +
-                "WHERE DATE(mc.fecha_hora) = DATE('now','localtime') ORDER BY mc.fecha_hora DESC";
+                "WHERE mc.fecha_hora >= ? AND mc.fecha_hora < ? ORDER BY mc.fecha_hora DESC";
+        String hoy = RangoFechas.hoy();
         try (Connection conn = DatabaseManager.getInstance().getConnection();
-                Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next())
-                list.add(mapRow(rs));
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, RangoFechas.inicio(hoy));
+            ps.setString(2, RangoFechas.finExclusivo(hoy));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    list.add(mapRow(rs));
+            }
         } catch (SQLException e) {
             System.err.println("[MovimientoCajaDAO] Error en findHoy: " + e.getMessage());
         }
@@ -33,6 +33,8 @@ public class ProductoDAO {
 
     /**
      * Retorna todos los productos (activos e inactivos).
+     *
+     * @return la lista, o null si hubo error (distinto de no tener productos).
      */
     public List<Producto> findAll() {
         List<Producto> productos = new ArrayList<>();
@@ -45,6 +47,7 @@ public class ProductoDAO {
             }
         } catch (SQLException e) {
             System.err.println("[ProductoDAO] Error en findAll: " + e.getMessage());
+            return null;
         }
         return productos;
     }
@@ -67,26 +70,6 @@ public class ProductoDAO {
         return productos;
     }
 
-    /**
-     * Busca productos por nombre (búsqueda parcial, case-insensitive).
-     */
-    public List<Producto> findByNombre(String nombre) {
-        List<Producto> productos = new ArrayList<>();
-        String sql = "SELECT * FROM productos WHERE LOWER(nombre) LIKE LOWER(?) ORDER BY nombre";
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, "%" + nombre + "%");
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    productos.add(mapRow(rs));
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println("[ProductoDAO] Error en findByNombre: " + e.getMessage());
-        }
-        return productos;
-    }
-
     /**
      * Inserta un nuevo producto.
      * 
@@ -0,0 +1,31 @@
+package com.sellcontrol.dao;
+
+import java.time.LocalDate;
+
+/**
+ * Límites de rangos de fecha para consultas sobre columnas fecha_hora.
+ * fecha_hora se guarda como texto ISO ordenable ('yyyy-MM-dd HH:mm:ss'), así
+ * que un rango de días se expresa como intervalo semiabierto
+ * [desde, hasta + 1 día) comparando la columna directamente. A diferencia de
+ * DATE(fecha_hora), esto permite que SQLite use el índice de fecha_hora.
+ */
+final class RangoFechas {
+
+    private RangoFechas() {
+    }
+
+    /** Límite inferior inclusivo: el inicio del día 'desde' (yyyy-MM-dd). */
+    static String inicio(String desde) {
+        return LocalDate.parse(desde).toString();
+    }
+
+    /** Límite superior exclusivo: el inicio del día siguiente a 'hasta'. */
+    static String finExclusivo(String hasta) {
+        return LocalDate.parse(hasta).plusDays(1).toString();
+    }
+
+    /** Día actual (hora local) como yyyy-MM-dd. */
+    static String hoy() {
+        return LocalDate.now().toString();
+    }
+}
@@ -0,0 +1,79 @@
+package com.sellcontrol.dao;
+
+import com.sellcontrol.db.DatabaseManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Recorre las filas de un rango de fecha_hora por lotes, de la más nueva a la
+ * más vieja, continuando cada lote desde la última (fecha_hora, id) leída.
+ *
+ * El préstamo de la conexión solo se tiene mientras se lee cada lote: el
+ * consumidor corre sin la conexión, así que puede ser lento (escribir un
+ * Excel a disco) sin frenar una venta que espera el lock.
+ */
+final class RecorridoPorLotes {
+
+    /** Convierte la fila actual del cursor en un objeto. */
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private RecorridoPorLotes() {
+    }
+
+    /**
+     * Recorre el rango. La SQL debe filtrar y ordenar así, con cinco parámetros:
+     * <pre>
+     * WHERE fecha_hora &gt;= ? AND fecha_hora &lt; ? AND (fecha_hora, id) &lt; (?, ?)
+     * ORDER BY fecha_hora DESC, id DESC LIMIT ?
+     * </pre>
+     * Con el índice de fecha_hora (que termina implícitamente en id) cada lote
+     * es una búsqueda en el índice, sin ordenar.
+     *
+     * @throws SQLException si falló la lectura de algún lote.
+     */
+    static <T> void recorrer(String sql, String desde, String hasta, RowMapper<T> mapper,
+            Function<T, String> fecha, ToIntFunction<T> id, Consumer<T> consumer) throws SQLException {
+        DatabaseManager db = DatabaseManager.getInstance();
+        int lote = Math.max(db.getFetchSize(), 100);
+        String fin = RangoFechas.finExclusivo(hasta);
+        String ultimaFecha = fin;
+        int ultimoId = Integer.MAX_VALUE;
+        List<T> filas = new ArrayList<>(lote);
+        while (true) {
+            filas.clear();
+            try (Connection conn = db.getConnection();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, RangoFechas.inicio(desde));
+                ps.setString(2, fin);
+                ps.setString(3, ultimaFecha);
+                ps.setInt(4, ultimoId);
+                ps.setInt(5, lote);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        filas.add(mapper.map(rs));
+                }
+            }
+            // Fuera del préstamo: el consumidor no retiene la conexión
+            for (T fila : filas) {
+                consumer.accept(fila);
+            }
+            if (filas.size() < lote) {
+                return;
+            }
+            T ultima = filas.get(filas.size() - 1);
+            ultimaFecha = fecha.apply(ultima);
+            ultimoId = id.applyAsInt(ultima);
+        }
+    }
+}
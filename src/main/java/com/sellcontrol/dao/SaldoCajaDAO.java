@@ -0,0 +1,89 @@
+package com.sellcontrol.dao;
+
+import com.sellcontrol.db.DatabaseManager;
+
+import java.sql.*;
+
+/**
+ * Data Access Object para el saldo esperado de la caja (tabla caja_saldo).
+ *
+ * Hay una fila por día con el efectivo que debería haber en la gaveta:
+ * ventas en EFECTIVO cobradas, fiados cobrados en EFECTIVO, ingresos y cambio
+ * (el fondo de apertura) menos retiros. Cada operación suma su parte con
+ * sumar(), usando la transacción de la propia operación, así que el saldo
+ * guardado nunca queda adelantado ni atrasado respecto de lo registrado.
+ */
+public class SaldoCajaDAO {
+
+    /** Saldo de un día; version crece con cada cambio de ese día. */
+    public record Saldo(String fecha, double saldo, long version) {
+    }
+
+    /**
+     * Suma 'monto' (negativo para retiros) al saldo de hoy, usando la
+     * conexión (y transacción) del llamador. El primer cambio del día crea la
+     * fila partiendo de cero.
+     *
+     * @return el saldo de hoy ya actualizado.
+     * @throws SQLException si falla, para que la transacción haga rollback.
+     */
+    public Saldo sumar(Connection conn, double monto) throws SQLException {
+        String sql = "INSERT INTO caja_saldo (fecha, saldo) VALUES (?, ?) "
+                + "ON CONFLICT(fecha) DO UPDATE SET saldo = saldo + excluded.saldo, version = version + 1, "
+                + "actualizado = datetime('now','localtime') "
+                + "RETURNING fecha, saldo, version";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, RangoFechas.hoy());
+            ps.setDouble(2, monto);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return mapRow(rs);
+            }
+        }
+    }
+
+    /**
+     * Retorna el saldo de hoy. Si todavía no hay fila (primer arranque con esta
+     * versión) se calcula una vez a partir de las ventas y movimientos del día.
+     * Los fiados de días anteriores cobrados hoy antes de existir la fila no se
+     * pueden distinguir y no se cuentan.
+     */
+    public Saldo findHoy() {
+        String hoy = RangoFechas.hoy();
+        String desde = RangoFechas.inicio(hoy);
+        String hasta = RangoFechas.finExclusivo(hoy);
+        String reconstruir = "INSERT INTO caja_saldo (fecha, saldo) VALUES (?, "
+                + "(SELECT COALESCE(SUM(total), 0) FROM ventas "
+                + "WHERE fecha_hora >= ? AND fecha_hora < ? AND estado = 'COBRADA' AND metodo_pago = 'EFECTIVO') + "
+                + "(SELECT COALESCE(SUM(CASE tipo WHEN 'RETIRO' THEN -monto ELSE monto END), 0) FROM movimientos_caja "
+                + "WHERE fecha_hora >= ? AND fecha_hora < ?)) "
+                + "ON CONFLICT(fecha) DO NOTHING";
+        try {
+            return DatabaseManager.getInstance().inTransaction(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(reconstruir)) {
+                    ps.setString(1, hoy);
+                    ps.setString(2, desde);
+                    ps.setString(3, hasta);
+                    ps.setString(4, desde);
+                    ps.setString(5, hasta);
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT fecha, saldo, version FROM caja_saldo WHERE fecha = ?")) {
+                    ps.setString(1, hoy);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        return mapRow(rs);
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[SaldoCajaDAO] Error en findHoy: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private Saldo mapRow(ResultSet rs) throws SQLException {
+        return new Saldo(rs.getString("fecha"), rs.getDouble("saldo"), rs.getLong("version"));
+    }
+}
@@ -184,17 +184,21 @@ public class UsuarioDAO {
     }
 
     /**
-     * Cuenta los registros asociados a un usuario en cada tabla.
+     * Cuenta los registros asociados a un usuario en cada tabla. La
+     * auditoría incluye la archivada (audit_archivo_usuario).
      * 
      * @return int[3] con conteos de [ventas, movimientos_caja, audit_log], o null
      *         si hay error.
      */
     public int[] contarRegistrosAsociados(int id) {
-        String[] tablas = { "ventas", "movimientos_caja", "audit_log" };
+        String[] consultas = { "SELECT COUNT(*) FROM ventas WHERE usuario_id = ?",
+                "SELECT COUNT(*) FROM movimientos_caja WHERE usuario_id = ?",
+                "SELECT (SELECT COUNT(*) FROM audit_log WHERE usuario_id = ?1) "
+                        + "+ (SELECT COALESCE(SUM(registros), 0) FROM audit_archivo_usuario WHERE usuario_id = ?1)" };
         int[] conteos = new int[3];
         try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-            for (int i = 0; i < tablas.length; i++) {
-                String sql = "SELECT COUNT(*) FROM " + tablas[i] + " WHERE usuario_id = ?";
+            for (int i = 0; i < consultas.length; i++) {
+                String sql = consultas[i];
                 try (PreparedStatement ps = conn.prepareStatement(sql)) {
                     ps.setInt(1, id);
                     try (ResultSet rs = ps.executeQuery()) {
@@ -212,10 +216,33 @@ public class UsuarioDAO {
     }
 
     /**
-     * Elimina un usuario junto con todos sus registros asociados (cascade).
-     * Primero elimina detalles de venta, luego ventas, movimientos, audit_log y
-     * finalmente el usuario.
-     * Todo dentro de una transacción.
+     * Desactiva un usuario sin tocar sus registros. Es lo que se hace con un
+     * usuario que tiene auditoría, que no se puede borrar.
+     * 
+     * @return true si se desactivó correctamente.
+     */
+    public boolean desactivar(int id) {
+        String sql = "UPDATE usuarios SET activo = 0 WHERE id = ?";
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            return ps.executeUpdate() > 0;
+        } catch (SQLException e) {
+            System.err.println("[UsuarioDAO] Error en desactivar: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Elimina un usuario junto con sus registros asociados (cascade).
+     * Primero elimina detalles de venta, luego ventas, movimientos y
+     * finalmente el usuario. Todo dentro de una transacción.
+     * 
+     * La auditoría es de solo inserción y sus filas referencian ventas y
+     * movimientos: si el usuario tiene registros de auditoría, vigentes o
+     * archivados (ver tieneAuditoria), no se borra nada y retorna false (para ese caso está desactivar()). Tampoco si
+     * tiene ventas o movimientos de hoy, que ya están sumados en el saldo de
+     * la caja (caja_saldo).
      * 
      * @return true si se eliminó correctamente.
      */
@@ -224,12 +251,25 @@ public class UsuarioDAO {
                 "DELETE FROM detalle_venta WHERE venta_id IN (SELECT id FROM ventas WHERE usuario_id = ?)",
                 "DELETE FROM ventas WHERE usuario_id = ?",
                 "DELETE FROM movimientos_caja WHERE usuario_id = ?",
-                "DELETE FROM audit_log WHERE usuario_id = ?",
                 "DELETE FROM usuarios WHERE id = ?"
         };
         try (Connection conn = DatabaseManager.getInstance().getConnection()) {
             conn.setAutoCommit(false);
             try {
+                // Dentro de la transacción, para que no aparezcan registros entre la
+                // verificación y el borrado
+                if (tieneAuditoria(conn, id)) {
+                    conn.rollback();
+                    System.err.println("[UsuarioDAO] deleteConRegistros rechazado: el usuario " + id
+                            + " tiene registros de auditoría.");
+                    return false;
+                }
+                if (tieneRegistrosDeHoy(conn, id)) {
+                    conn.rollback();
+                    System.err.println("[UsuarioDAO] deleteConRegistros rechazado: el usuario " + id
+                            + " tiene ventas o movimientos de caja de hoy.");
+                    return false;
+                }
                 for (String sql : sqlStatements) {
                     try (PreparedStatement ps = conn.prepareStatement(sql)) {
                         ps.setInt(1, id);
@@ -248,6 +288,65 @@ public class UsuarioDAO {
         return false;
     }
 
+    /**
+     * Indica si el usuario tiene registros de auditoría, en audit_log o en el
+     * archivo. Si queda algún archivo cuyos usuarios todavía no se contaron
+     * (ver ArchivoAuditoria.contarUsuariosPendientes) no se puede saber, y se
+     * responde true.
+     * 
+     * @return true si tiene, o si no se pudo verificar.
+     */
+    public boolean tieneAuditoria(int id) {
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            return tieneAuditoria(conn, id);
+        } catch (SQLException e) {
+            System.err.println("[UsuarioDAO] Error en tieneAuditoria: " + e.getMessage());
+        }
+        return true;
+    }
+
+    private boolean tieneAuditoria(Connection conn, int id) throws SQLException {
+        return existe(conn, "SELECT EXISTS (SELECT 1 FROM audit_log WHERE usuario_id = ?1) "
+                + "OR EXISTS (SELECT 1 FROM audit_archivo_usuario WHERE usuario_id = ?1) "
+                + "OR EXISTS (SELECT 1 FROM audit_archivo a WHERE NOT EXISTS "
+                + "(SELECT 1 FROM audit_archivo_usuario u WHERE u.hasta_id = a.hasta_id))", id);
+    }
+
+    /**
+     * Indica si el usuario tiene ventas o movimientos de caja de hoy.
+     * 
+     * @return true si tiene, o si no se pudo verificar.
+     */
+    public boolean tieneRegistrosDeHoy(int id) {
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            return tieneRegistrosDeHoy(conn, id);
+        } catch (SQLException e) {
+            System.err.println("[UsuarioDAO] Error en tieneRegistrosDeHoy: " + e.getMessage());
+        }
+        return true;
+    }
+
+    private boolean tieneRegistrosDeHoy(Connection conn, int id) throws SQLException {
+        String hoy = RangoFechas.hoy();
+        String desde = RangoFechas.inicio(hoy);
+        String hasta = RangoFechas.finExclusivo(hoy);
+        return existe(conn, "SELECT EXISTS (SELECT 1 FROM ventas WHERE usuario_id = ? "
+                + "AND fecha_hora >= ? AND fecha_hora < ?)", id, desde, hasta)
+                || existe(conn, "SELECT EXISTS (SELECT 1 FROM movimientos_caja WHERE usuario_id = ? "
+                        + "AND fecha_hora >= ? AND fecha_hora < ?)", id, desde, hasta);
+    }
+
+    private boolean existe(Connection conn, String sql, Object... parametros) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < parametros.length; i++) {
+                ps.setObject(i + 1, parametros[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
     /**
      * Mapea un ResultSet a un objeto Usuario.
      */
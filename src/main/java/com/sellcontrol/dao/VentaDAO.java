@@ -6,19 +6,44 @@ import com.sellcontrol.model.Venta;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Data Access Object para la entidad Venta.
  */
 public class VentaDAO {
 
+    /**
+     * Recibe los totales agregados de ventas sin crear objetos Venta.
+     */
+    @FunctionalInterface
+    public interface TotalesVisitor {
+        void visitar(String estado, String metodoPago, int cantidad, double total);
+    }
+
     /**
      * Inserta una nueva venta y retorna el ID generado.
      */
     public int insert(Venta v) {
-        String sql = "INSERT INTO ventas (usuario_id, total, metodo_pago, estado, cliente_nombre) VALUES (?, ?, ?, ?, ?)";
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            return insert(conn, v);
+        } catch (SQLException e) {
+            System.err.println("[VentaDAO] Error en insert: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    /**
+     * Inserta una venta usando la conexión (y transacción) del llamador. Deja
+     * en la venta el ID y la fecha_hora que le asignó la base.
+     *
+     * @return el ID generado.
+     * @throws SQLException si falla, para que la transacción haga rollback.
+     */
+    public int insert(Connection conn, Venta v) throws SQLException {
+        String sql = "INSERT INTO ventas (usuario_id, total, metodo_pago, estado, cliente_nombre) VALUES (?, ?, ?, ?, ?) "
+                + "RETURNING id, fecha_hora";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, v.getUsuarioId());
             ps.setDouble(2, v.getTotal());
             ps.setString(3, v.getMetodoPago());
@@ -28,15 +53,15 @@ public class VentaDAO {
             } else {
                 ps.setNull(5, Types.VARCHAR);
             }
-            ps.executeUpdate();
-            try (ResultSet keys = ps.getGeneratedKeys()) {
-                if (keys.next())
-                    return keys.getInt(1);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    v.setId(rs.getInt("id"));
+                    v.setFechaHora(rs.getString("fecha_hora"));
+                    return v.getId();
+                }
             }
-        } catch (SQLException e) {
-            System.err.println("[VentaDAO] Error en insert: " + e.getMessage());
         }
-        return -1;
+        throw new SQLException("No se obtuvo el ID de la venta insertada.");
     }
 
     /**
@@ -63,12 +88,16 @@ public class VentaDAO {
     public List<Venta> findVentasHoy() {
         List<Venta> ventas = new ArrayList<>();
         String sql = "SELECT v.*, u.nombre AS nombre_usuario FROM ventas v JOIN usuarios u ON v.usuario_id = u.id " +
-                "WHERE DATE(v.fecha_hora) = DATE('now','localtime') ORDER BY v.fecha_hora DESC";
+                "WHERE v.fecha_hora >= ? AND v.fecha_hora < ? ORDER BY v.fecha_hora DESC";
+        String hoy = RangoFechas.hoy();
         try (Connection conn = DatabaseManager.getInstance().getConnection();
-                Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next())
-                ventas.add(mapRow(rs));
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, RangoFechas.inicio(hoy));
+            ps.setString(2, RangoFechas.finExclusivo(hoy));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    ventas.add(mapRow(rs));
+            }
         } catch (SQLException e) {
             System.err.println("[VentaDAO] Error en findVentasHoy: " + e.getMessage());
         }
@@ -83,10 +112,11 @@ public class VentaDAO {
         String sql = "SELECT v.*, u.nombre AS nombre_usuario FROM ventas v JOIN usuarios u ON v.usuario_id = u.id " +
                 "WHERE v.estado = 'PENDIENTE' ORDER BY v.fecha_hora DESC";
         try (Connection conn = DatabaseManager.getInstance().getConnection();
-                Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next())
-                ventas.add(mapRow(rs));
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    ventas.add(mapRow(rs));
+            }
         } catch (SQLException e) {
             System.err.println("[VentaDAO] Error en findPendientes: " + e.getMessage());
         }
@@ -94,32 +124,36 @@ public class VentaDAO {
     }
 
     /**
-     * Marca una venta pendiente como cobrada y actualiza el método de pago.
+     * Marca una venta pendiente como cobrada usando la conexión (y
+     * transacción) del llamador.
+     *
+     * @return el total cobrado, o -1 si la venta no existe o no estaba
+     *         pendiente.
+     * @throws SQLException si falla, para que la transacción haga rollback.
      */
-    public boolean cobrar(int ventaId, String metodoPago) {
-        String sql = "UPDATE ventas SET estado = 'COBRADA', metodo_pago = ? WHERE id = ? AND estado = 'PENDIENTE'";
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
+    public double cobrar(Connection conn, int ventaId, String metodoPago) throws SQLException {
+        String sql = "UPDATE ventas SET estado = 'COBRADA', metodo_pago = ? WHERE id = ? AND estado = 'PENDIENTE' "
+                + "RETURNING total";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, metodoPago);
             ps.setInt(2, ventaId);
-            return ps.executeUpdate() > 0;
-        } catch (SQLException e) {
-            System.err.println("[VentaDAO] Error en cobrar: " + e.getMessage());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getDouble(1) : -1;
+            }
         }
-        return false;
     }
 
     /**
-     * Retorna ventas por rango de fechas.
+     * Retorna ventas por rango de fechas (yyyy-MM-dd, ambos días incluidos).
      */
     public List<Venta> findByRangoFechas(String desde, String hasta) {
         List<Venta> ventas = new ArrayList<>();
         String sql = "SELECT v.*, u.nombre AS nombre_usuario FROM ventas v JOIN usuarios u ON v.usuario_id = u.id " +
-                "WHERE DATE(v.fecha_hora) BETWEEN ? AND ? ORDER BY v.fecha_hora DESC";
+                "WHERE v.fecha_hora >= ? AND v.fecha_hora < ? ORDER BY v.fecha_hora DESC";
         try (Connection conn = DatabaseManager.getInstance().getConnection();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, desde);
-            ps.setString(2, hasta);
+            ps.setString(1, RangoFechas.inicio(desde));
+            ps.setString(2, RangoFechas.finExclusivo(hasta));
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next())
                     ventas.add(mapRow(rs));
@@ -130,6 +164,51 @@ public class VentaDAO {
         return ventas;
     }
 
+    /**
+     * Recorre las filas del rango (más nuevas primero) por lotes, sin juntarlas
+     * en una lista. La conexión se suelta entre lotes y el consumidor corre
+     * sin ella, así que puede ser lento sin frenar las ventas.
+     *
+     * @return false si hubo error.
+     */
+    public boolean forEachInRange(String desde, String hasta, Consumer<Venta> consumer) {
+        String sql = "SELECT v.*, u.nombre AS nombre_usuario FROM ventas v JOIN usuarios u ON v.usuario_id = u.id " +
+                "WHERE v.fecha_hora >= ? AND v.fecha_hora < ? AND (v.fecha_hora, v.id) < (?, ?) " +
+                "ORDER BY v.fecha_hora DESC, v.id DESC LIMIT ?";
+        try {
+            RecorridoPorLotes.recorrer(sql, desde, hasta, this::mapRow, Venta::getFechaHora, Venta::getId, consumer);
+            return true;
+        } catch (SQLException e) {
+            System.err.println("[VentaDAO] Error en forEachInRange: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Agrupa las ventas del rango por estado y método de pago
+     * (GROUP BY estado, metodo_pago) y entrega cada grupo al visitor.
+     *
+     * @return false si hubo error.
+     */
+    public boolean totalesPorEstadoYMetodo(String desde, String hasta, TotalesVisitor visitor) {
+        String sql = "SELECT estado, metodo_pago, COUNT(*) AS cantidad, COALESCE(SUM(total), 0) AS total " +
+                "FROM ventas WHERE fecha_hora >= ? AND fecha_hora < ? GROUP BY estado, metodo_pago";
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, RangoFechas.inicio(desde));
+            ps.setString(2, RangoFechas.finExclusivo(hasta));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    visitor.visitar(rs.getString("estado"), rs.getString("metodo_pago"), rs.getInt("cantidad"),
+                            rs.getDouble("total"));
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("[VentaDAO] Error en totalesPorEstadoYMetodo: " + e.getMessage());
+        }
+        return false;
+    }
+
     private Venta mapRow(ResultSet rs) throws SQLException {
         Venta v = new Venta();
         v.setId(rs.getInt("id"));
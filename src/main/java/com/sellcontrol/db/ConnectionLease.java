@@ -0,0 +1,104 @@
+package com.sellcontrol.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Préstamo (lease) de la conexión física de SQLite.
+ * Los DAOs reciben un proxy de {@link Connection} cuyo {@code close()} solo
+ * devuelve el préstamo: la conexión real permanece abierta.
+ * Mientras el préstamo está activo, el hilo que lo tiene posee el lock de la
+ * conexión, así que dos hilos nunca intercalan sentencias ni transacciones.
+ */
+class ConnectionLease implements InvocationHandler {
+
+    private final Connection physical;
+    private final ReentrantLock lock;
+    private final StatementCache statementCache;
+    private boolean released;
+
+    private ConnectionLease(Connection physical, ReentrantLock lock, StatementCache statementCache) {
+        this.physical = physical;
+        this.lock = lock;
+        this.statementCache = statementCache;
+    }
+
+    /**
+     * Crea un préstamo sobre la conexión física. El llamador ya debe tener el
+     * lock; se libera al cerrar el proxy. prepareStatement(sql) y
+     * prepareStatement(sql, autoGeneratedKeys) se sirven desde la caché.
+     */
+    static Connection wrap(Connection physical, ReentrantLock lock, StatementCache statementCache) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new ConnectionLease(physical, lock, statementCache));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "close":
+                release();
+                return null;
+            case "isClosed":
+                return released || physical.isClosed();
+            case "unwrap":
+                if (((Class<?>) args[0]).isInstance(physical)) {
+                    return physical;
+                }
+                break;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "prepareStatement":
+                if (!released && args.length == 1) {
+                    return statementCache.prepare((String) args[0], Statement.NO_GENERATED_KEYS);
+                }
+                if (!released && args.length == 2 && args[1] instanceof Integer keys) {
+                    return statementCache.prepare((String) args[0], keys);
+                }
+                break;
+            case "toString":
+                return "ConnectionLease[" + physical + (released ? ", liberado" : "") + "]";
+            default:
+                break;
+        }
+        if (released) {
+            throw new SQLException("El préstamo de conexión ya fue liberado.");
+        }
+        try {
+            return method.invoke(physical, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Devuelve el préstamo. Si es el préstamo más externo del hilo y quedó
+     * autoCommit=false, se revierte lo no confirmado y se restaura autoCommit
+     * para el siguiente préstamo. Los préstamos anidados (un DAO llamado dentro
+     * de una transacción abierta) no tocan la transacción.
+     */
+    private void release() throws SQLException {
+        if (released) {
+            return;
+        }
+        released = true;
+        try {
+            if (lock.getHoldCount() == 1 && !physical.isClosed() && !physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
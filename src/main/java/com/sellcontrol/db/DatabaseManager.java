@@ -9,10 +9,20 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Administra la conexión a SQLite y la inicialización del esquema.
- * Implementa Singleton para una sola conexión en toda la aplicación.
+ * Implementa Singleton con una sola conexión física de larga vida: se abre una
+ * vez, se configura una vez y los DAOs la usan mediante préstamos
+ * ({@link ConnectionLease}) cuyo close() no la cierra.
  */
 public class DatabaseManager {
 
@@ -23,6 +33,28 @@ public class DatabaseManager {
     private static DatabaseManager instance;
     private Connection connection;
 
+    /** Serializa el uso de la conexión física entre hilos (reentrante por hilo). */
+    private final ReentrantLock connectionLock = new ReentrantLock();
+
+    /** Cantidad de veces que se abrió físicamente el archivo de la base. */
+    private final AtomicInteger physicalOpens = new AtomicInteger();
+
+    /** Caché de sentencias de la conexión física actual. */
+    private StatementCache statementCache;
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    /** Perfil de PRAGMAs, leído una vez de config/database.properties. */
+    private DatabaseProfile profile;
+
+    /** Momento (nanoTime) del último préstamo, para detectar reposo. */
+    private volatile long lastUse = System.nanoTime();
+
+    private ScheduledExecutorService checkpointScheduler;
+
+    /** Tareas a ejecutar en close() antes de cerrar la conexión. */
+    private final List<Runnable> tareasAlCerrar = new CopyOnWriteArrayList<>();
+
     private DatabaseManager() {
     }
 
@@ -34,147 +66,177 @@ public class DatabaseManager {
     }
 
     /**
-     * Obtiene la conexión a la base de datos. Crea una nueva si no existe.
+     * Obtiene un préstamo de la conexión a la base de datos.
+     * El objeto devuelto debe cerrarse (try-with-resources) para liberar el
+     * préstamo; cerrarlo NO cierra la conexión física. Mientras esté abierto,
+     * otros hilos esperan su turno.
      */
     public Connection getConnection() throws SQLException {
+        connectionLock.lock();
+        lastUse = System.nanoTime();
+        try {
+            Connection physical = getPhysicalConnection();
+            return ConnectionLease.wrap(physical, connectionLock, statementCache);
+        } catch (SQLException | RuntimeException e) {
+            connectionLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve la conexión física, abriéndola y configurándola solo si no existe
+     * o se perdió. Debe llamarse con el lock tomado.
+     */
+    private Connection getPhysicalConnection() throws SQLException {
         if (connection == null || connection.isClosed()) {
-            connection = DriverManager.getConnection(getDbUrl());
-            // Habilitar foreign keys en SQLite
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute("PRAGMA foreign_keys = ON");
+            if (statementCache != null) {
+                statementCache.close();
             }
+            connection = DriverManager.getConnection(getDbUrl());
+            physicalOpens.incrementAndGet();
+            configureConnection(connection);
+            statementCache = new StatementCache(connection, getProfile().getStatementCacheSize(),
+                    statementHits, statementMisses);
         }
         return connection;
     }
 
     /**
-     * Inicializa la base de datos: crea tablas y seed de admin.
+     * Configuración por conexión, ejecutada una sola vez al abrirla.
      */
-    public void initialize() {
+    private void configureConnection(Connection conn) throws SQLException {
+        // Habilitar foreign keys en SQLite
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA foreign_keys = ON");
+        }
+        getProfile().aplicar(conn);
+    }
+
+    private synchronized DatabaseProfile getProfile() {
+        if (profile == null) {
+            profile = DatabaseProfile.cargar();
+        }
+        return profile;
+    }
+
+    /**
+     * En modo WAL programa un checkpoint PASSIVE periódico que solo corre cuando
+     * la conexión está libre y no se usó en el último intervalo, para que el
+     * archivo -wal no crezca sin límite y no se interfiera con una venta.
+     */
+    private void startIdleCheckpoint() {
+        int segundos = getProfile().getCheckpointSegundos();
+        if (!getProfile().isWal() || segundos <= 0 || checkpointScheduler != null) {
+            return;
+        }
+        checkpointScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        checkpointScheduler.scheduleWithFixedDelay(() -> checkpointIfIdle(segundos), segundos, segundos,
+                TimeUnit.SECONDS);
+    }
+
+    private void checkpointIfIdle(int segundos) {
+        if (System.nanoTime() - lastUse < TimeUnit.SECONDS.toNanos(segundos)) {
+            return;
+        }
+        if (!connectionLock.tryLock()) {
+            return;
+        }
         try {
-            Connection conn = getConnection();
-            createTables(conn);
-            seedAdmin(conn);
-            System.out.println("[DB] Base de datos inicializada correctamente.");
+            if (connection == null || connection.isClosed()) {
+                return;
+            }
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("PRAGMA wal_checkpoint(PASSIVE)");
+            }
         } catch (SQLException e) {
-            System.err.println("[DB] Error al inicializar la base de datos: " + e.getMessage());
-            e.printStackTrace();
+            System.err.println("[DB] Error en checkpoint: " + e.getMessage());
+        } finally {
+            connectionLock.unlock();
         }
     }
 
     /**
-     * Crea todas las tablas del sistema si no existen.
+     * @return sentencias servidas desde la caché desde el arranque.
+     */
+    public long getStatementCacheHits() {
+        return statementHits.get();
+    }
+
+    /**
+     * @return sentencias que hubo que preparar (no estaban en caché).
      */
-    private void createTables(Connection conn) throws SQLException {
-        String[] sqls = {
-                // Usuarios
-                """
-                        CREATE TABLE IF NOT EXISTS usuarios (
-                            id          INTEGER PRIMARY KEY AUTOINCREMENT,
-                            nombre      TEXT NOT NULL,
-                            usuario     TEXT NOT NULL UNIQUE,
-                            contrasena  TEXT NOT NULL,
-                            rol         TEXT NOT NULL CHECK(rol IN ('ADMIN','CAJERO')),
-                            activo      INTEGER NOT NULL DEFAULT 1,
-                            creado_en   TEXT NOT NULL DEFAULT (datetime('now','localtime'))
-                        )
-                        """,
-
-                // Productos
-                """
-                        CREATE TABLE IF NOT EXISTS productos (
-                            id                INTEGER PRIMARY KEY AUTOINCREMENT,
-                            nombre            TEXT NOT NULL,
-                            tipo              TEXT NOT NULL CHECK(tipo IN ('FRUTA','VERDURA','LEGUMBRES','OTROS')),
-                            precio_por_kg     REAL,
-                            precio_por_unidad REAL,
-                            activo            INTEGER NOT NULL DEFAULT 1,
-                            creado_en         TEXT NOT NULL DEFAULT (datetime('now','localtime'))
-                        )
-                        """,
-
-                // Ventas
-                """
-                        CREATE TABLE IF NOT EXISTS ventas (
-                            id             INTEGER PRIMARY KEY AUTOINCREMENT,
-                            fecha_hora     TEXT NOT NULL DEFAULT (datetime('now','localtime')),
-                            usuario_id     INTEGER NOT NULL,
-                            total          REAL NOT NULL DEFAULT 0,
-                            metodo_pago    TEXT NOT NULL CHECK(metodo_pago IN ('EFECTIVO','TARJETA','SINPE','PENDIENTE')),
-                            estado         TEXT NOT NULL DEFAULT 'COBRADA' CHECK(estado IN ('COBRADA','PENDIENTE')),
-                            cliente_nombre TEXT,
-                            FOREIGN KEY (usuario_id) REFERENCES usuarios(id)
-                        )
-                        """,
-
-                // Detalle de Venta
-                """
-                        CREATE TABLE IF NOT EXISTS detalle_venta (
-                            id          INTEGER PRIMARY KEY AUTOINCREMENT,
-                            venta_id    INTEGER NOT NULL,
-                            producto_id INTEGER NOT NULL,
-                            cantidad    REAL NOT NULL,
-                            tipo_unidad TEXT NOT NULL CHECK(tipo_unidad IN ('KG','UNIDAD')),
-                            subtotal    REAL NOT NULL,
-                            FOREIGN KEY (venta_id) REFERENCES ventas(id),
-                            FOREIGN KEY (producto_id) REFERENCES productos(id)
-                        )
-                        """,
-
-                // Movimientos de Caja
-                """
-                        CREATE TABLE IF NOT EXISTS movimientos_caja (
-                            id          INTEGER PRIMARY KEY AUTOINCREMENT,
-                            tipo        TEXT NOT NULL CHECK(tipo IN ('INGRESO','CAMBIO','RETIRO')),
-                            monto       REAL NOT NULL,
-                            motivo      TEXT NOT NULL,
-                            usuario_id  INTEGER NOT NULL,
-                            fecha_hora  TEXT NOT NULL DEFAULT (datetime('now','localtime')),
-                            FOREIGN KEY (usuario_id) REFERENCES usuarios(id)
-                        )
-                        """,
-
-                // Gastos
-                """
-                        CREATE TABLE IF NOT EXISTS gastos (
-                            id          INTEGER PRIMARY KEY AUTOINCREMENT,
-                            tipo        TEXT NOT NULL CHECK(tipo IN ('ABASTECIMIENTO','EMPLEADOS')),
-                            monto       REAL NOT NULL,
-                            fecha_hora  TEXT NOT NULL DEFAULT (datetime('now','localtime')),
-                            descripcion TEXT
-                        )
-                        """,
-
-                // Merma
-                """
-                        CREATE TABLE IF NOT EXISTS mermas (
-                            id               INTEGER PRIMARY KEY AUTOINCREMENT,
-                            descripcion      TEXT NOT NULL,
-                            monto_aproximado REAL NOT NULL,
-                            fecha_hora       TEXT NOT NULL DEFAULT (datetime('now','localtime'))
-                        )
-                        """,
-
-                // Auditoría
-                """
-                        CREATE TABLE IF NOT EXISTS audit_log (
-                            id          INTEGER PRIMARY KEY AUTOINCREMENT,
-                            usuario_id  INTEGER NOT NULL,
-                            accion      TEXT NOT NULL,
-                            entidad     TEXT NOT NULL,
-                            entidad_id  INTEGER,
-                            fecha_hora  TEXT NOT NULL DEFAULT (datetime('now','localtime')),
-                            FOREIGN KEY (usuario_id) REFERENCES usuarios(id)
-                        )
-                        """
-        };
+    public long getStatementCacheMisses() {
+        return statementMisses.get();
+    }
 
-        try (Statement stmt = conn.createStatement()) {
-            for (String sql : sqls) {
-                stmt.execute(sql);
+    /**
+     * @return filas por lectura para los cursores de streaming (clave
+     *         'fetch_size' del perfil).
+     */
+    public int getFetchSize() {
+        return getProfile().getFetchSize();
+    }
+
+    /**
+     * @return días que la auditoría se conserva en la base (clave
+     *         'auditoria_retencion_dias' del perfil; 0 = no archivar).
+     */
+    public int getAuditoriaRetencionDias() {
+        return getProfile().getAuditoriaRetencionDias();
+    }
+
+    /**
+     * Ejecuta una unidad de trabajo en una sola transacción (un solo commit).
+     * Si ya hay una transacción abierta en este hilo, la unidad se une a ella y
+     * el commit lo hace la transacción externa.
+     *
+     * @return el valor devuelto por la unidad de trabajo.
+     * @throws SQLException si la unidad falla; en ese caso se hizo rollback.
+     */
+    public <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        try (Connection conn = getConnection()) {
+            if (!conn.getAutoCommit()) {
+                return work.execute(conn);
+            }
+            conn.setAutoCommit(false);
+            try {
+                T result = work.execute(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         }
-        System.out.println("[DB] Tablas creadas/verificadas correctamente.");
+    }
+
+    /**
+     * @return cuántas veces se abrió físicamente la base desde el arranque.
+     *         Tras initialize() debe valer 1 y no crecer durante una venta.
+     */
+    public int getPhysicalOpenCount() {
+        return physicalOpens.get();
+    }
+
+    /**
+     * Inicializa la base de datos: aplica migraciones pendientes y seed de admin.
+     */
+    public void initialize() {
+        try (Connection conn = getConnection()) {
+            SchemaMigrator.migrate(conn);
+            seedAdmin(conn);
+            startIdleCheckpoint();
+            System.out.println("[DB] Base de datos inicializada correctamente.");
+        } catch (SQLException e) {
+            System.err.println("[DB] Error al inicializar la base de datos: " + e.getMessage());
+            e.printStackTrace();
+        }
     }
 
     /**
@@ -201,16 +263,42 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Registra una tarea que close() ejecuta antes de cerrar la conexión (por
+     * ejemplo, escribir lo que quedó pendiente en una cola).
+     */
+    public void alCerrar(Runnable tarea) {
+        tareasAlCerrar.add(tarea);
+    }
+
     /**
      * Cierra la conexión a la base de datos.
      */
     public void close() {
+        for (Runnable tarea : tareasAlCerrar) {
+            try {
+                tarea.run();
+            } catch (RuntimeException e) {
+                System.err.println("[DB] Error en tarea de cierre: " + e.getMessage());
+            }
+        }
+        if (checkpointScheduler != null) {
+            checkpointScheduler.shutdownNow();
+            checkpointScheduler = null;
+        }
+        connectionLock.lock();
         try {
+            if (statementCache != null) {
+                statementCache.close();
+                statementCache = null;
+            }
             if (connection != null && !connection.isClosed()) {
                 connection.close();
             }
         } catch (SQLException e) {
             System.err.println("[DB] Error al cerrar conexión: " + e.getMessage());
+        } finally {
+            connectionLock.unlock();
         }
     }
 }
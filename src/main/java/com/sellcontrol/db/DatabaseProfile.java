@@ -0,0 +1,197 @@
+package com.sellcontrol.db;
+
+import com.sellcontrol.config.AppPaths;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Perfil de rendimiento de SQLite (PRAGMAs aplicados al abrir la conexión).
+ * Se lee de 'database.properties' en el directorio de configuración.
+ * La clave 'perfil' elige un perfil base y cualquier otra clave lo sobrescribe.
+ *
+ * Perfiles disponibles:
+ * - equilibrado (por defecto): WAL + synchronous=NORMAL. Las lecturas de
+ * reportes no bloquean las ventas y cada commit es mucho más barato en
+ * discos lentos (HDD/eMMC). Ante un corte de luz se puede perder la última
+ * transacción, pero la base nunca queda corrupta.
+ * - seguro: WAL + synchronous=FULL. Ningún commit confirmado se pierde.
+ * - compatible: journal clásico (DELETE) + FULL, el comportamiento anterior.
+ */
+public class DatabaseProfile {
+
+    // Claves
+    private static final String KEY_PERFIL = "perfil";
+    private static final String KEY_JOURNAL_MODE = "journal_mode";
+    private static final String KEY_SYNCHRONOUS = "synchronous";
+    private static final String KEY_CACHE_SIZE = "cache_size";
+    private static final String KEY_MMAP_SIZE = "mmap_size";
+    private static final String KEY_TEMP_STORE = "temp_store";
+    private static final String KEY_BUSY_TIMEOUT = "busy_timeout";
+    private static final String KEY_CHECKPOINT_SEGUNDOS = "checkpoint_segundos";
+    private static final String KEY_STATEMENT_CACHE = "statement_cache";
+    private static final String KEY_FETCH_SIZE = "fetch_size";
+    private static final String KEY_AUDITORIA_DIAS = "auditoria_retencion_dias";
+
+    private static final String DEF_PERFIL = "equilibrado";
+
+    private final String nombre;
+    private final String journalMode;
+    private final String synchronous;
+    private final int cacheSize;
+    private final long mmapSize;
+    private final String tempStore;
+    private final int busyTimeout;
+    private final int checkpointSegundos;
+    private final int statementCacheSize;
+    private final int fetchSize;
+    private final int auditoriaRetencionDias;
+
+    private DatabaseProfile(String nombre, Properties props) {
+        Properties base = perfilBase(nombre);
+        this.nombre = nombre;
+        this.journalMode = leerPalabra(props, base, KEY_JOURNAL_MODE);
+        this.synchronous = leerPalabra(props, base, KEY_SYNCHRONOUS);
+        this.cacheSize = leerEntero(props, base, KEY_CACHE_SIZE);
+        this.mmapSize = Long.parseLong(props.getProperty(KEY_MMAP_SIZE, base.getProperty(KEY_MMAP_SIZE)).trim());
+        this.tempStore = leerPalabra(props, base, KEY_TEMP_STORE);
+        this.busyTimeout = leerEntero(props, base, KEY_BUSY_TIMEOUT);
+        this.checkpointSegundos = leerEntero(props, base, KEY_CHECKPOINT_SEGUNDOS);
+        this.statementCacheSize = leerEntero(props, base, KEY_STATEMENT_CACHE);
+        this.fetchSize = leerEntero(props, base, KEY_FETCH_SIZE);
+        this.auditoriaRetencionDias = leerEntero(props, base, KEY_AUDITORIA_DIAS);
+    }
+
+    /**
+     * Carga el perfil desde el archivo de configuración. Si el archivo no existe
+     * se crea con el perfil por defecto para que pueda editarse. Si tiene
+     * valores inválidos se usa el perfil por defecto.
+     */
+    public static DatabaseProfile cargar() {
+        Path path = AppPaths.getDbConfigPath();
+        Properties props = new Properties();
+        if (Files.exists(path)) {
+            try (Reader r = new InputStreamReader(new FileInputStream(path.toFile()), StandardCharsets.UTF_8)) {
+                props.load(r);
+            } catch (IOException e) {
+                System.err.println("[DB] Error al cargar perfil de base de datos: " + e.getMessage());
+            }
+        } else {
+            props.setProperty(KEY_PERFIL, DEF_PERFIL);
+            try (Writer w = new OutputStreamWriter(new FileOutputStream(path.toFile()), StandardCharsets.UTF_8)) {
+                props.store(w, "Perfil de SQLite: equilibrado | seguro | compatible");
+            } catch (IOException e) {
+                System.err.println("[DB] No se pudo crear " + path + ": " + e.getMessage());
+            }
+        }
+
+        String nombre = props.getProperty(KEY_PERFIL, DEF_PERFIL).trim().toLowerCase();
+        try {
+            return new DatabaseProfile(nombre, props);
+        } catch (RuntimeException e) {
+            System.err.println("[DB] Perfil '" + nombre + "' inválido (" + e.getMessage()
+                    + "), se usa '" + DEF_PERFIL + "'.");
+            return new DatabaseProfile(DEF_PERFIL, new Properties());
+        }
+    }
+
+    /** Valores de cada perfil con nombre. */
+    private static Properties perfilBase(String nombre) {
+        Properties p = new Properties();
+        p.setProperty(KEY_CACHE_SIZE, "-16000"); // negativo = KiB (~16 MB)
+        p.setProperty(KEY_MMAP_SIZE, String.valueOf(64L * 1024 * 1024));
+        p.setProperty(KEY_TEMP_STORE, "MEMORY");
+        p.setProperty(KEY_BUSY_TIMEOUT, "5000");
+        p.setProperty(KEY_CHECKPOINT_SEGUNDOS, "60");
+        p.setProperty(KEY_STATEMENT_CACHE, "64");
+        p.setProperty(KEY_FETCH_SIZE, "256");
+        p.setProperty(KEY_AUDITORIA_DIAS, "365");
+        switch (nombre) {
+            case "equilibrado" -> {
+                p.setProperty(KEY_JOURNAL_MODE, "WAL");
+                p.setProperty(KEY_SYNCHRONOUS, "NORMAL");
+            }
+            case "seguro" -> {
+                p.setProperty(KEY_JOURNAL_MODE, "WAL");
+                p.setProperty(KEY_SYNCHRONOUS, "FULL");
+            }
+            case "compatible" -> {
+                p.setProperty(KEY_JOURNAL_MODE, "DELETE");
+                p.setProperty(KEY_SYNCHRONOUS, "FULL");
+                p.setProperty(KEY_CACHE_SIZE, "-2000");
+                p.setProperty(KEY_MMAP_SIZE, "0");
+                p.setProperty(KEY_TEMP_STORE, "DEFAULT");
+                p.setProperty(KEY_CHECKPOINT_SEGUNDOS, "0");
+            }
+            default -> throw new IllegalArgumentException("perfil desconocido");
+        }
+        return p;
+    }
+
+    /** Solo acepta una palabra, para no inyectar texto arbitrario en los PRAGMA. */
+    private static String leerPalabra(Properties props, Properties base, String key) {
+        String valor = props.getProperty(key, base.getProperty(key)).trim();
+        if (!valor.matches("[A-Za-z]+")) {
+            throw new IllegalArgumentException(key + " inválido: " + valor);
+        }
+        return valor.toUpperCase();
+    }
+
+    private static int leerEntero(Properties props, Properties base, String key) {
+        return Integer.parseInt(props.getProperty(key, base.getProperty(key)).trim());
+    }
+
+    /**
+     * Aplica los PRAGMAs del perfil a una conexión recién abierta.
+     */
+    void aplicar(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // busy_timeout primero: cambiar a WAL necesita un lock exclusivo
+            stmt.execute("PRAGMA busy_timeout = " + busyTimeout);
+            stmt.execute("PRAGMA journal_mode = " + journalMode);
+            stmt.execute("PRAGMA synchronous = " + synchronous);
+            stmt.execute("PRAGMA cache_size = " + cacheSize);
+            stmt.execute("PRAGMA mmap_size = " + mmapSize);
+            stmt.execute("PRAGMA temp_store = " + tempStore);
+        }
+        System.out.println("[DB] Perfil '" + nombre + "' aplicado: journal=" + journalMode
+                + ", synchronous=" + synchronous + ", cache=" + cacheSize + ", mmap=" + mmapSize);
+    }
+
+    public boolean isWal() {
+        return "WAL".equalsIgnoreCase(journalMode);
+    }
+
+    /** Segundos entre checkpoints en reposo (0 = desactivado). */
+    public int getCheckpointSegundos() {
+        return checkpointSegundos;
+    }
+
+    /** Máximo de sentencias preparadas en caché (0 = sin caché). */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /** Filas por lectura en los cursores de streaming de los DAOs. */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Días que la auditoría se queda en la base antes de pasar al archivo
+     * comprimido (0 = no archivar).
+     */
+    public int getAuditoriaRetencionDias() {
+        return auditoriaRetencionDias;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+}
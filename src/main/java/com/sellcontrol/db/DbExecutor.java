@@ -0,0 +1,73 @@
+package com.sellcontrol.db;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Ejecutor de acceso a base de datos fuera del hilo de JavaFX.
+ * Usa un único hilo dedicado ("db-worker"): toda la aplicación comparte una
+ * sola conexión SQLite, así que más hilos solo esperarían el mismo lock.
+ * Además, las tareas corren en el orden en que se enviaron, por lo que una
+ * recarga enviada después de una escritura siempre ve esa escritura.
+ *
+ * Los resultados se aplican a la UI desde el controlador con
+ * Platform.runLater (ver CargaAsync).
+ *
+ * Las tareas largas que sueltan la conexión entre lotes (exportar a Excel,
+ * buscar en el archivo de auditoría) van a un segundo hilo ("db-fondo") con
+ * submitLargo(), para que las cargas de las pantallas no esperen detrás.
+ */
+public final class DbExecutor {
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "db-worker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final ExecutorService FONDO = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "db-fondo");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private DbExecutor() {
+    }
+
+    /**
+     * Ejecuta la tarea en el hilo de base de datos.
+     *
+     * @return un future que se completa con el resultado o con la excepción.
+     */
+    public static <T> CompletableFuture<T> submit(Supplier<T> tarea) {
+        return CompletableFuture.supplyAsync(tarea, EXECUTOR);
+    }
+
+    /**
+     * Ejecuta una tarea larga en el hilo de fondo. La tarea no debe retener la
+     * conexión mucho tiempo seguido: solo lotes cortos.
+     *
+     * @return un future que se completa con el resultado o con la excepción.
+     */
+    public static <T> CompletableFuture<T> submitLargo(Supplier<T> tarea) {
+        return CompletableFuture.supplyAsync(tarea, FONDO);
+    }
+
+    /**
+     * Deja de aceptar tareas y espera brevemente a que terminen las pendientes.
+     */
+    public static void shutdown() {
+        FONDO.shutdownNow();
+        EXECUTOR.shutdown();
+        try {
+            if (!EXECUTOR.awaitTermination(5, TimeUnit.SECONDS)) {
+                System.err.println("[DB] Tareas de base de datos sin terminar al cerrar.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
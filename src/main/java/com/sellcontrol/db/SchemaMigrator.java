@@ -0,0 +1,291 @@
+package com.sellcontrol.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Migraciones versionadas del esquema, controladas con PRAGMA user_version.
+ * Cada migración corre en su propia transacción junto con el cambio de
+ * user_version: o se aplica entera o no se aplica. Con la base al día no se
+ * ejecuta ningún DDL al arrancar.
+ *
+ * Para cambiar el esquema se agrega una migración nueva al final de la lista;
+ * nunca se modifica una ya publicada. Todas usan IF NOT EXISTS para ser
+ * seguras sobre bases antiguas creadas antes de existir este control
+ * (user_version = 0 con las tablas ya creadas).
+ */
+final class SchemaMigrator {
+
+    private record Migration(int version, String descripcion, String... sqls) {
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Tablas base",
+                    // Usuarios
+                    """
+                            CREATE TABLE IF NOT EXISTS usuarios (
+                                id          INTEGER PRIMARY KEY AUTOINCREMENT,
+                                nombre      TEXT NOT NULL,
+                                usuario     TEXT NOT NULL UNIQUE,
+                                contrasena  TEXT NOT NULL,
+                                rol         TEXT NOT NULL CHECK(rol IN ('ADMIN','CAJERO')),
+                                activo      INTEGER NOT NULL DEFAULT 1,
+                                creado_en   TEXT NOT NULL DEFAULT (datetime('now','localtime'))
+                            )
+                            """,
+
+                    // Productos
+                    """
+                            CREATE TABLE IF NOT EXISTS productos (
+                                id                INTEGER PRIMARY KEY AUTOINCREMENT,
+                                nombre            TEXT NOT NULL,
+                                tipo              TEXT NOT NULL CHECK(tipo IN ('FRUTA','VERDURA','LEGUMBRES','OTROS')),
+                                precio_por_kg     REAL,
+                                precio_por_unidad REAL,
+                                activo            INTEGER NOT NULL DEFAULT 1,
+                                creado_en         TEXT NOT NULL DEFAULT (datetime('now','localtime'))
+                            )
+                            """,
+
+                    // Ventas
+                    """
+                            CREATE TABLE IF NOT EXISTS ventas (
+                                id             INTEGER PRIMARY KEY AUTOINCREMENT,
+                                fecha_hora     TEXT NOT NULL DEFAULT (datetime('now','localtime')),
+                                usuario_id     INTEGER NOT NULL,
+                                total          REAL NOT NULL DEFAULT 0,
+                                metodo_pago    TEXT NOT NULL CHECK(metodo_pago IN ('EFECTIVO','TARJETA','SINPE','PENDIENTE')),
+                                estado         TEXT NOT NULL DEFAULT 'COBRADA' CHECK(estado IN ('COBRADA','PENDIENTE')),
+                                cliente_nombre TEXT,
+                                FOREIGN KEY (usuario_id) REFERENCES usuarios(id)
+                            )
+                            """,
+
+                    // Detalle de Venta
+                    """
+                            CREATE TABLE IF NOT EXISTS detalle_venta (
+                                id          INTEGER PRIMARY KEY AUTOINCREMENT,
+                                venta_id    INTEGER NOT NULL,
+                                producto_id INTEGER NOT NULL,
+                                cantidad    REAL NOT NULL,
+                                tipo_unidad TEXT NOT NULL CHECK(tipo_unidad IN ('KG','UNIDAD')),
+                                subtotal    REAL NOT NULL,
+                                FOREIGN KEY (venta_id) REFERENCES ventas(id),
+                                FOREIGN KEY (producto_id) REFERENCES productos(id)
+                            )
+                            """,
+
+                    // Movimientos de Caja
+                    """
+                            CREATE TABLE IF NOT EXISTS movimientos_caja (
+                                id          INTEGER PRIMARY KEY AUTOINCREMENT,
+                                tipo        TEXT NOT NULL CHECK(tipo IN ('INGRESO','CAMBIO','RETIRO')),
+                                monto       REAL NOT NULL,
+                                motivo      TEXT NOT NULL,
+                                usuario_id  INTEGER NOT NULL,
+                                fecha_hora  TEXT NOT NULL DEFAULT (datetime('now','localtime')),
+                                FOREIGN KEY (usuario_id) REFERENCES usuarios(id)
+                            )
+                            """,
+
+                    // Gastos
+                    """
+                            CREATE TABLE IF NOT EXISTS gastos (
+                                id          INTEGER PRIMARY KEY AUTOINCREMENT,
+                                tipo        TEXT NOT NULL CHECK(tipo IN ('ABASTECIMIENTO','EMPLEADOS')),
+                                monto       REAL NOT NULL,
+                                fecha_hora  TEXT NOT NULL DEFAULT (datetime('now','localtime')),
+                                descripcion TEXT
+                            )
+                            """,
+
+                    // Merma
+                    """
+                            CREATE TABLE IF NOT EXISTS mermas (
+                                id               INTEGER PRIMARY KEY AUTOINCREMENT,
+                                descripcion      TEXT NOT NULL,
+                                monto_aproximado REAL NOT NULL,
+                                fecha_hora       TEXT NOT NULL DEFAULT (datetime('now','localtime'))
+                            )
+                            """,
+
+                    // Auditoría
+                    """
+                            CREATE TABLE IF NOT EXISTS audit_log (
+                                id          INTEGER PRIMARY KEY AUTOINCREMENT,
+                                usuario_id  INTEGER NOT NULL,
+                                accion      TEXT NOT NULL,
+                                entidad     TEXT NOT NULL,
+                                entidad_id  INTEGER,
+                                fecha_hora  TEXT NOT NULL DEFAULT (datetime('now','localtime')),
+                                FOREIGN KEY (usuario_id) REFERENCES usuarios(id)
+                            )
+                            """),
+
+            new Migration(2, "Índices de fechas, estados y claves foráneas",
+                    "CREATE INDEX IF NOT EXISTS idx_ventas_fecha_hora ON ventas(fecha_hora)",
+                    "CREATE INDEX IF NOT EXISTS idx_ventas_estado ON ventas(estado)",
+                    "CREATE INDEX IF NOT EXISTS idx_ventas_usuario_id ON ventas(usuario_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_detalle_venta_venta_id ON detalle_venta(venta_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_detalle_venta_producto_id ON detalle_venta(producto_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_movimientos_caja_fecha_hora ON movimientos_caja(fecha_hora)",
+                    "CREATE INDEX IF NOT EXISTS idx_movimientos_caja_usuario_id ON movimientos_caja(usuario_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_gastos_fecha_hora ON gastos(fecha_hora)",
+                    "CREATE INDEX IF NOT EXISTS idx_mermas_fecha_hora ON mermas(fecha_hora)",
+                    "CREATE INDEX IF NOT EXISTS idx_audit_log_fecha_hora ON audit_log(fecha_hora)",
+                    "CREATE INDEX IF NOT EXISTS idx_audit_log_usuario_id ON audit_log(usuario_id)"),
+
+            // Los DAOs filtran rangos comparando fecha_hora como texto ISO; cualquier
+            // valor con otro formato (p. ej. 'T' como separador) quedaría fuera.
+            new Migration(3, "Normalizar fecha_hora a 'yyyy-MM-dd HH:mm:ss'",
+                    normalizarFecha("ventas"),
+                    normalizarFecha("movimientos_caja"),
+                    normalizarFecha("gastos"),
+                    normalizarFecha("mermas"),
+                    normalizarFecha("audit_log")),
+
+            // La auditoría es la evidencia contra robos: cada registro se encadena
+            // por hash al anterior y ni los registros ni los checkpoints se pueden
+            // modificar o borrar desde la aplicación.
+            new Migration(4, "Auditoría encadenada por hash y de solo inserción",
+                    "ALTER TABLE audit_log ADD COLUMN hash BLOB",
+                    """
+                            CREATE TABLE IF NOT EXISTS audit_checkpoint (
+                                id          INTEGER PRIMARY KEY AUTOINCREMENT,
+                                hasta_id    INTEGER NOT NULL UNIQUE,
+                                hash        BLOB NOT NULL,
+                                fecha_hora  TEXT NOT NULL DEFAULT (datetime('now','localtime'))
+                            )
+                            """,
+                    soloInsercion("audit_log", "UPDATE"),
+                    soloInsercion("audit_log", "DELETE"),
+                    soloInsercion("audit_checkpoint", "UPDATE"),
+                    soloInsercion("audit_checkpoint", "DELETE")),
+
+            // Pantalla de auditoría: cada filtro por igualdad tiene un índice que
+            // (implícitamente) termina en id, para paginar por id sin ordenar.
+            new Migration(5, "Índices para filtrar la auditoría",
+                    "CREATE INDEX IF NOT EXISTS idx_audit_log_accion ON audit_log(accion)",
+                    "CREATE INDEX IF NOT EXISTS idx_audit_log_entidad ON audit_log(entidad)",
+                    "CREATE INDEX IF NOT EXISTS idx_audit_log_usuario_accion ON audit_log(usuario_id, accion)"),
+
+            // La auditoría vieja se pasa a archivos comprimidos (ArchivoAuditoria).
+            // Lo archivado es siempre un prefijo de ids, así que solo se permite
+            // borrar registros con id hasta el último archivo registrado.
+            new Migration(6, "Archivo de auditoría",
+                    """
+                            CREATE TABLE IF NOT EXISTS audit_archivo (
+                                id          INTEGER PRIMARY KEY AUTOINCREMENT,
+                                desde_id    INTEGER NOT NULL,
+                                hasta_id    INTEGER NOT NULL UNIQUE,
+                                archivo     TEXT NOT NULL,
+                                registros   INTEGER NOT NULL,
+                                hash        BLOB,
+                                fecha_hora  TEXT NOT NULL DEFAULT (datetime('now','localtime'))
+                            )
+                            """,
+                    "DROP TRIGGER IF EXISTS audit_log_sin_delete",
+                    "CREATE TRIGGER audit_log_sin_delete BEFORE DELETE ON audit_log "
+                            + "WHEN OLD.id > (SELECT COALESCE(MAX(hasta_id), 0) FROM audit_archivo) "
+                            + "BEGIN SELECT RAISE(ABORT, 'audit_log: solo se borran registros ya archivados'); END",
+                    soloInsercion("audit_archivo", "UPDATE"),
+                    soloInsercion("audit_archivo", "DELETE")),
+
+            // Saldo esperado de la caja por día (SaldoCajaDAO): se actualiza en la
+            // misma transacción que cada venta, cobro o movimiento. version crece
+            // con cada cambio para ordenar las actualizaciones en memoria.
+            new Migration(7, "Saldo de caja",
+                    """
+                            CREATE TABLE IF NOT EXISTS caja_saldo (
+                                fecha        TEXT PRIMARY KEY,
+                                saldo        REAL NOT NULL DEFAULT 0,
+                                version      INTEGER NOT NULL DEFAULT 1,
+                                actualizado  TEXT NOT NULL DEFAULT (datetime('now','localtime'))
+                            )
+                            """),
+
+            // Cuántos registros de cada usuario hay en cada archivo de auditoría
+            // (por su hasta_id), para saber sin descomprimir si un usuario tiene
+            // auditoría archivada. Se llena al archivar; los archivos anteriores
+            // a esta migración se cuentan en el mantenimiento al arrancar.
+            new Migration(8, "Usuarios del archivo de auditoría",
+                    """
+                            CREATE TABLE IF NOT EXISTS audit_archivo_usuario (
+                                usuario_id  INTEGER NOT NULL,
+                                hasta_id    INTEGER NOT NULL,
+                                registros   INTEGER NOT NULL,
+                                PRIMARY KEY (usuario_id, hasta_id)
+                            )
+                            """,
+                    "CREATE INDEX IF NOT EXISTS idx_audit_archivo_usuario_hasta ON audit_archivo_usuario(hasta_id)",
+                    soloInsercion("audit_archivo_usuario", "UPDATE"),
+                    soloInsercion("audit_archivo_usuario", "DELETE")));
+
+    private SchemaMigrator() {
+    }
+
+    private static String normalizarFecha(String tabla) {
+        return "UPDATE " + tabla + " SET fecha_hora = datetime(fecha_hora) "
+                + "WHERE fecha_hora NOT GLOB '[0-9][0-9][0-9][0-9]-[0-9][0-9]-[0-9][0-9] [0-9][0-9]:[0-9][0-9]:[0-9][0-9]' "
+                + "AND datetime(fecha_hora) IS NOT NULL";
+    }
+
+    private static String soloInsercion(String tabla, String operacion) {
+        return "CREATE TRIGGER IF NOT EXISTS " + tabla + "_sin_" + operacion.toLowerCase()
+                + " BEFORE " + operacion + " ON " + tabla
+                + " BEGIN SELECT RAISE(ABORT, '" + tabla + " es de solo inserción'); END";
+    }
+
+    /** Versión de esquema que espera esta versión de la aplicación. */
+    static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    /**
+     * Aplica en orden las migraciones con versión mayor a la actual.
+     *
+     * @throws SQLException si una migración falla (queda revertida y la base
+     *                      permanece en la última versión completa).
+     */
+    static void migrate(Connection conn) throws SQLException {
+        int actual = currentVersion(conn);
+        if (actual >= latestVersion()) {
+            System.out.println("[DB] Esquema al día (versión " + actual + ").");
+            return;
+        }
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            for (Migration m : MIGRATIONS) {
+                if (m.version() <= actual) {
+                    continue;
+                }
+                try (Statement stmt = conn.createStatement()) {
+                    for (String sql : m.sqls()) {
+                        stmt.execute(sql);
+                    }
+                    stmt.execute("PRAGMA user_version = " + m.version());
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Migración " + m.version() + " (" + m.descripcion() + ") falló: "
+                            + e.getMessage(), e);
+                }
+                System.out.println("[DB] Migración " + m.version() + " aplicada: " + m.descripcion());
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
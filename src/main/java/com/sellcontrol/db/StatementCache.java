@@ -0,0 +1,137 @@
+package com.sellcontrol.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché LRU de PreparedStatement de la conexión física, indexada por el texto
+ * SQL (y si pide claves generadas). Evita que SQLite vuelva a parsear el SQL
+ * de las sentencias frecuentes, como los INSERT de una venta.
+ *
+ * Funciona como un pool: al pedir una sentencia se saca de la caché y al
+ * cerrarla (close() del DAO) se limpian sus parámetros y vuelve a la caché.
+ * Si la misma SQL se pide dos veces a la vez, la segunda se prepara aparte.
+ */
+class StatementCache {
+
+    private final Connection physical;
+    private final int capacidad;
+    private final LinkedHashMap<String, PreparedStatement> libres = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private boolean cerrada;
+
+    StatementCache(Connection physical, int capacidad, AtomicLong hits, AtomicLong misses) {
+        this.physical = physical;
+        this.capacidad = capacidad;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    /**
+     * Devuelve una sentencia preparada para la SQL, reutilizando una libre si
+     * existe. El close() del objeto devuelto la regresa a la caché.
+     */
+    synchronized PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys + ":" + sql;
+        PreparedStatement ps = libres.remove(key);
+        if (ps != null && !ps.isClosed()) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            ps = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS
+                    ? physical.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : physical.prepareStatement(sql);
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new Prestamo(key, ps));
+    }
+
+    /** Regresa una sentencia a la caché, expulsando la menos usada si hace falta. */
+    private synchronized void devolver(String key, PreparedStatement ps) throws SQLException {
+        if (cerrada || capacidad <= 0 || libres.containsKey(key)) {
+            ps.close();
+            return;
+        }
+        try {
+            ps.clearParameters();
+            ps.clearBatch();
+        } catch (SQLException e) {
+            ps.close();
+            return;
+        }
+        libres.put(key, ps);
+        if (libres.size() > capacidad) {
+            Iterator<PreparedStatement> it = libres.values().iterator();
+            PreparedStatement eldest = it.next();
+            it.remove();
+            eldest.close();
+        }
+    }
+
+    /** Cierra todas las sentencias libres; las prestadas se cierran al devolverse. */
+    synchronized void close() {
+        cerrada = true;
+        for (Map.Entry<String, PreparedStatement> e : libres.entrySet()) {
+            try {
+                e.getValue().close();
+            } catch (SQLException ex) {
+                System.err.println("[DB] Error al cerrar sentencia en caché: " + ex.getMessage());
+            }
+        }
+        libres.clear();
+    }
+
+    /** Proxy de la sentencia prestada: close() la devuelve en lugar de cerrarla. */
+    private class Prestamo implements InvocationHandler {
+
+        private final String key;
+        private final PreparedStatement ps;
+        private boolean devuelta;
+
+        Prestamo(String key, PreparedStatement ps) {
+            this.key = key;
+            this.ps = ps;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!devuelta) {
+                        devuelta = true;
+                        devolver(key, ps);
+                    }
+                    return null;
+                case "isClosed":
+                    return devuelta || ps.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (devuelta) {
+                throw new SQLException("La sentencia ya fue cerrada.");
+            }
+            try {
+                return method.invoke(ps, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.sellcontrol.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Unidad de trabajo que se ejecuta dentro de una transacción de
+ * {@link DatabaseManager#inTransaction(TransactionWork)}.
+ * Cualquier SQLException lanzada provoca rollback de toda la unidad.
+ */
+@FunctionalInterface
+public interface TransactionWork<T> {
+
+    T execute(Connection conn) throws SQLException;
+}
@@ -12,6 +12,9 @@ public class AuditLog {
     private Integer entidadId;
     private String fechaHora;
 
+    // Campo auxiliar (no en DB, para mostrar en UI)
+    private String nombreUsuario;
+
     public AuditLog() {}
 
     public AuditLog(int usuarioId, String accion, String entidad, Integer entidadId) {
@@ -40,4 +43,7 @@ public class AuditLog {
 
     public String getFechaHora() { return fechaHora; }
     public void setFechaHora(String fechaHora) { this.fechaHora = fechaHora; }
+
+    public String getNombreUsuario() { return nombreUsuario; }
+    public void setNombreUsuario(String nombreUsuario) { this.nombreUsuario = nombreUsuario; }
 }
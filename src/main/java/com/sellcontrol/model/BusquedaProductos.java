@@ -0,0 +1,14 @@
+package com.sellcontrol.model;
+
+import java.util.List;
+
+/**
+ * Resultado de una búsqueda de productos.
+ *
+ * @param productos  productos encontrados, los más relevantes primero
+ * @param aproximada true si no hubo coincidencias por prefijo y los productos
+ *                   son sugerencias por parecido (posibles errores de tipeo):
+ *                   no deben elegirse sin que el usuario las confirme
+ */
+public record BusquedaProductos(List<Producto> productos, boolean aproximada) {
+}
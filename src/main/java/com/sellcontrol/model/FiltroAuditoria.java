@@ -0,0 +1,13 @@
+package com.sellcontrol.model;
+
+/**
+ * Filtro de la consulta de auditoría. Cada campo en null no filtra.
+ *
+ * @param usuarioId id del usuario que hizo la acción
+ * @param accion    acción exacta (ej: LOGIN, COBRAR_VENTA)
+ * @param entidad   entidad afectada (ej: VENTA, USUARIO)
+ * @param desde     primer día incluido (yyyy-MM-dd)
+ * @param hasta     último día incluido (yyyy-MM-dd)
+ */
+public record FiltroAuditoria(Integer usuarioId, String accion, String entidad, String desde, String hasta) {
+}
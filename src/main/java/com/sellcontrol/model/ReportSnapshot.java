@@ -0,0 +1,90 @@
+package com.sellcontrol.model;
+
+/**
+ * Totales de un reporte para un rango de fechas, calculados una sola vez con
+ * consultas agregadas. Lo usan la pantalla de reportes y la exportación Excel.
+ */
+public class ReportSnapshot {
+
+    private final String desde;
+    private final String hasta;
+    private final int cantidadVentas;
+    private final double totalVentas;
+    private final double cobradas;
+    private final double efectivo;
+    private final double tarjeta;
+    private final double sinpe;
+    private final double totalGastos;
+    private final double totalMerma;
+
+    public ReportSnapshot(String desde, String hasta, int cantidadVentas, double totalVentas, double cobradas,
+            double efectivo, double tarjeta, double sinpe, double totalGastos, double totalMerma) {
+        this.desde = desde;
+        this.hasta = hasta;
+        this.cantidadVentas = cantidadVentas;
+        this.totalVentas = totalVentas;
+        this.cobradas = cobradas;
+        this.efectivo = efectivo;
+        this.tarjeta = tarjeta;
+        this.sinpe = sinpe;
+        this.totalGastos = totalGastos;
+        this.totalMerma = totalMerma;
+    }
+
+    // --- Getters ---
+
+    public String getDesde() {
+        return desde;
+    }
+
+    public String getHasta() {
+        return hasta;
+    }
+
+    public int getCantidadVentas() {
+        return cantidadVentas;
+    }
+
+    /** Total de todas las ventas (cobradas y pendientes). */
+    public double getTotalVentas() {
+        return totalVentas;
+    }
+
+    public double getCobradas() {
+        return cobradas;
+    }
+
+    public double getPendientes() {
+        return totalVentas - cobradas;
+    }
+
+    /** Ventas cobradas en efectivo. */
+    public double getEfectivo() {
+        return efectivo;
+    }
+
+    /** Ventas cobradas con tarjeta. */
+    public double getTarjeta() {
+        return tarjeta;
+    }
+
+    /** Ventas cobradas por SINPE. */
+    public double getSinpe() {
+        return sinpe;
+    }
+
+    public double getTotalGastos() {
+        return totalGastos;
+    }
+
+    public double getTotalMerma() {
+        return totalMerma;
+    }
+
+    /**
+     * @return la ganancia real: Ventas cobradas - Gastos - Merma.
+     */
+    public double getGanancia() {
+        return cobradas - totalGastos - totalMerma;
+    }
+}
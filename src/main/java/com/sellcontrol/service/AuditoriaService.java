@@ -0,0 +1,62 @@
+package com.sellcontrol.service;
+
+import com.sellcontrol.dao.AuditLogDAO;
+import com.sellcontrol.model.AuditLog;
+import com.sellcontrol.model.FiltroAuditoria;
+
+import java.util.List;
+
+/**
+ * Servicio de consulta de la auditoría (solo ADMIN).
+ * La auditoría crece con cada login y venta, así que se lee por páginas: la
+ * pantalla pide la siguiente pasando el id del último registro que ya tiene.
+ */
+public class AuditoriaService {
+
+    /** Registros por página. */
+    public static final int TAMANO_PAGINA = 200;
+
+    private final AuditLogDAO auditLogDAO = new AuditLogDAO();
+
+    /**
+     * Primera página (los registros más recientes) del filtro.
+     */
+    public List<AuditLog> primeraPagina(FiltroAuditoria filtro) {
+        return auditLogDAO.buscarPagina(filtro, Long.MAX_VALUE, TAMANO_PAGINA);
+    }
+
+    /**
+     * Página siguiente a la que terminó en 'ultimoId'.
+     */
+    public List<AuditLog> paginaSiguiente(FiltroAuditoria filtro, int ultimoId) {
+        return auditLogDAO.buscarPagina(filtro, ultimoId, TAMANO_PAGINA);
+    }
+
+    /**
+     * Página de la auditoría archivada (la que ya salió de la base por
+     * retención), continuando desde 'antesDeId'.
+     */
+    public List<AuditLog> paginaArchivada(FiltroAuditoria filtro, long antesDeId) {
+        return auditLogDAO.buscarPaginaArchivada(filtro, antesDeId, TAMANO_PAGINA);
+    }
+
+    public List<String> listarAcciones() {
+        return auditLogDAO.listarAcciones();
+    }
+
+    public List<String> listarEntidades() {
+        return auditLogDAO.listarEntidades();
+    }
+
+    /**
+     * Verifica la cadena de hashes de la auditoría.
+     *
+     * @param completa true recalcula todos los registros, también los
+     *                 archivados; false solo los escritos desde el último
+     *                 checkpoint.
+     * @return null si está íntegra, o la descripción del problema.
+     */
+    public String verificarIntegridad(boolean completa) {
+        return auditLogDAO.verificarIntegridad(completa);
+    }
+}
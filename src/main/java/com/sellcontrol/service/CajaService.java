@@ -2,19 +2,29 @@ package com.sellcontrol.service;
 
 import com.sellcontrol.dao.AuditLogDAO;
 import com.sellcontrol.dao.MovimientoCajaDAO;
+import com.sellcontrol.dao.SaldoCajaDAO;
+import com.sellcontrol.db.DatabaseManager;
+import com.sellcontrol.db.DbExecutor;
 import com.sellcontrol.model.AuditLog;
 import com.sellcontrol.model.MovimientoCaja;
 import com.sellcontrol.model.Usuario;
 
+import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Servicio de gestión de caja.
+ * Además de los movimientos, expone el saldo esperado de la gaveta
+ * (SaldoCaja), que se mantiene en memoria y no requiere consultar el día.
  */
 public class CajaService {
 
     private final MovimientoCajaDAO movimientoCajaDAO = new MovimientoCajaDAO();
     private final AuditLogDAO auditLogDAO = new AuditLogDAO();
+    private final SaldoCajaDAO saldoCajaDAO = new SaldoCajaDAO();
+    private final SaldoCaja saldoCaja = SaldoCaja.getInstance();
 
     public String registrarMovimiento(String tipo, String montoStr, String motivo) {
         if (tipo == null)
@@ -43,15 +53,57 @@ public class CajaService {
         m.setMotivo(motivo.trim());
         m.setUsuarioId(user.getId());
 
-        int id = movimientoCajaDAO.insert(m);
-        if (id > 0) {
-            auditLogDAO.insert(new AuditLog(user.getId(), "MOVIMIENTO_CAJA", "MOVIMIENTO_CAJA", id));
-            return null;
+        // El movimiento y el saldo de la caja se guardan en una sola transacción
+        AtomicReference<SaldoCajaDAO.Saldo> nuevoSaldo = new AtomicReference<>();
+        int id;
+        try {
+            id = DatabaseManager.getInstance().inTransaction(conn -> {
+                int movimientoId = movimientoCajaDAO.insert(conn, m);
+                nuevoSaldo.set(saldoCajaDAO.sumar(conn, SaldoCaja.movimiento(m.getTipo(), m.getMonto())));
+                return movimientoId;
+            });
+        } catch (SQLException e) {
+            System.err.println("[CajaService] Error al registrar movimiento, rollback: " + e.getMessage());
+            return "Error al registrar movimiento.";
         }
-        return "Error al registrar movimiento.";
+        saldoCaja.publicar(nuevoSaldo.get());
+        auditLogDAO.insert(new AuditLog(user.getId(), "MOVIMIENTO_CAJA", "MOVIMIENTO_CAJA", id));
+        return null;
     }
 
     public List<MovimientoCaja> movimientosDeHoy() {
         return movimientoCajaDAO.findHoy();
     }
+
+    public CompletableFuture<List<MovimientoCaja>> movimientosDeHoyAsync() {
+        return DbExecutor.submit(this::movimientosDeHoy);
+    }
+
+    /**
+     * Carga el saldo de la caja en el hilo de base de datos, para que la
+     * primera consulta ya lo encuentre en memoria.
+     */
+    public CompletableFuture<Void> precargarSaldo() {
+        return DbExecutor.submit(() -> {
+            saldoCaja.asegurarCargado(saldoCajaDAO::findHoy);
+            return null;
+        });
+    }
+
+    /**
+     * Efectivo que debería haber hoy en la gaveta: ventas y cobros en
+     * EFECTIVO, ingresos y cambio, menos retiros.
+     */
+    public double saldoEsperado() {
+        saldoCaja.asegurarCargado(saldoCajaDAO::findHoy);
+        return saldoCaja.saldoDeHoy();
+    }
+
+    /**
+     * saldoEsperado() en el hilo de base de datos: si el saldo no está en
+     * memoria, cargarlo puede reconstruir la fila del día.
+     */
+    public CompletableFuture<Double> saldoEsperadoAsync() {
+        return DbExecutor.submit(this::saldoEsperado);
+    }
 }
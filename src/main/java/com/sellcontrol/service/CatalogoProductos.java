@@ -0,0 +1,150 @@
+package com.sellcontrol.service;
+
+import com.sellcontrol.model.Producto;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Catálogo de productos en memoria, compartido por todas las pantallas.
+ * Se carga una vez desde SQLite y después ProductoService lo mantiene al día
+ * en cada alta, edición, cambio de estado o eliminación, así que consultar un
+ * producto durante la venta no toca la base de datos.
+ *
+ * Las búsquedas usan un índice por prefijo (IndiceProductos) que se actualiza
+ * junto con el catálogo.
+ *
+ * Los Producto del catálogo no se modifican: cada cambio reemplaza la
+ * instancia. Las listas devueltas son inmutables y se regeneran solo cuando
+ * el catálogo cambió. Cada cambio incrementa la versión, que las pantallas
+ * pueden comparar para saber si su copia está desactualizada.
+ */
+final class CatalogoProductos {
+
+    private static final Comparator<Producto> POR_NOMBRE = Comparator
+            .comparing(Producto::getNombre, String.CASE_INSENSITIVE_ORDER)
+            .thenComparingInt(Producto::getId);
+
+    private static final CatalogoProductos INSTANCE = new CatalogoProductos();
+
+    private final Map<Integer, Producto> porId = new HashMap<>();
+    private final IndiceProductos indice = new IndiceProductos();
+    private boolean cargado;
+    private long version;
+    private List<Producto> todos; // null = hay que regenerar
+    private List<Producto> activos;
+
+    private CatalogoProductos() {
+    }
+
+    static CatalogoProductos getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Carga el catálogo con el lector dado si todavía no se cargó. Si el
+     * lector falla (devuelve null) el catálogo queda sin cargar y se vuelve a
+     * intentar en la próxima consulta, en lugar de quedar vacío.
+     */
+    synchronized void asegurarCargado(Supplier<List<Producto>> lector) {
+        if (cargado) {
+            return;
+        }
+        List<Producto> leidos = lector.get();
+        if (leidos == null) {
+            System.err.println("[Catalogo] No se pudo cargar el catálogo; se reintentará en la próxima consulta.");
+            return;
+        }
+        porId.clear();
+        indice.limpiar();
+        for (Producto p : leidos) {
+            porId.put(p.getId(), p);
+            indice.agregar(p);
+        }
+        cargado = true;
+        cambio();
+        System.out.println("[Catalogo] " + porId.size() + " productos en memoria.");
+    }
+
+    synchronized Producto get(int id) {
+        return porId.get(id);
+    }
+
+    /** Todos los productos, ordenados por nombre. */
+    synchronized List<Producto> todos() {
+        if (todos == null) {
+            List<Producto> lista = new ArrayList<>(porId.values());
+            lista.sort(POR_NOMBRE);
+            todos = List.copyOf(lista);
+        }
+        return todos;
+    }
+
+    /** Productos activos, ordenados por nombre. */
+    synchronized List<Producto> activos() {
+        if (activos == null) {
+            activos = todos().stream().filter(Producto::isActivo).toList();
+        }
+        return activos;
+    }
+
+    /**
+     * Busca por prefijo de palabra del nombre (sin distinguir tildes ni
+     * mayúsculas) o por prefijo de ID, con los mejores resultados primero.
+     */
+    synchronized List<Producto> buscar(String texto, boolean soloActivos) {
+        List<Producto> resultado = new ArrayList<>();
+        for (Integer id : indice.buscar(texto)) {
+            Producto p = porId.get(id);
+            if (!soloActivos || p.isActivo()) {
+                resultado.add(p);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Búsqueda tolerante a errores de tipeo, para cuando buscar() no encontró
+     * nada. Devuelve hasta 'limite' productos, los más parecidos primero.
+     */
+    synchronized List<Producto> buscarAproximado(String texto, boolean soloActivos, int limite,
+            long presupuestoNanos) {
+        List<Producto> resultado = new ArrayList<>();
+        // Se piden más para que queden 'limite' después de filtrar inactivos
+        for (Integer id : indice.buscarAproximado(texto, limite * 2, presupuestoNanos)) {
+            Producto p = porId.get(id);
+            if ((!soloActivos || p.isActivo()) && resultado.size() < limite) {
+                resultado.add(p);
+            }
+        }
+        return resultado;
+    }
+
+    /** Agrega o reemplaza un producto ya guardado en la base de datos. */
+    synchronized void poner(Producto p) {
+        porId.put(p.getId(), p);
+        indice.agregar(p);
+        cambio();
+    }
+
+    synchronized void quitar(int id) {
+        if (porId.remove(id) != null) {
+            indice.quitar(id);
+            cambio();
+        }
+    }
+
+    synchronized long getVersion() {
+        return version;
+    }
+
+    private void cambio() {
+        version++;
+        todos = null;
+        activos = null;
+    }
+}
@@ -0,0 +1,347 @@
+package com.sellcontrol.service;
+
+import com.sellcontrol.config.AppPaths;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cola de impresión con un hilo propio ("print-spooler"), para que registrar
+ * una venta no espere a la impresora: si está trabada, sin papel o
+ * desconectada, el cajero sigue atendiendo y los tickets salen cuando vuelva.
+ *
+ * Cada ticket ya generado en ESC/POS se guarda en AppPaths.getSpoolDir() y se
+ * borra solo después de enviarlo, así que sobrevive a un cierre inesperado y
+ * se reenvía al iniciar. El guardado (con fsync) lo hace un hilo aparte
+ * ("print-spool-writer"), no quien encola: la venta no espera al disco, a
+ * cambio de que un corte en esos milisegundos pierda el ticket. El mismo hilo
+ * anota los tickets de venta en el diario de tickets, antes del spool.
+ *
+ * Los tickets salen en orden; si uno falla (o el transporte lanza una
+ * excepción) se reintenta con espera creciente (1 s, 2 s, 4 s... hasta 1 min),
+ * hasta MAX_INTENTOS. Después se pasa a la carpeta "fallidos" del spool para
+ * que no frene a los siguientes.
+ *
+ * La apertura del cajón pasa por la misma cola (para no mezclar bytes con un
+ * ticket) pero se adelanta a los tickets encolados, también mientras uno
+ * espera para reintentar. No se guarda en disco y se descarta si no salió en
+ * 30 s: abrir el cajón minutos después, o al reiniciar, es peor que no abrirlo.
+ */
+public final class ColaImpresion {
+
+    private static final String EXTENSION = ".escpos";
+    private static final String FALLIDOS = "fallidos";
+    private static final long ESPERA_INICIAL_MS = 1_000;
+    private static final long ESPERA_MAXIMA_MS = 60_000;
+    /** Con la espera creciente son unos 6 minutos de reintentos. */
+    private static final int MAX_INTENTOS = 10;
+    /** Cada cuánto se revisa, durante la espera de un reintento, si llegó un cajón. */
+    private static final long REVISION_CAJON_MS = 250;
+    private static final long VIGENCIA_CAJON_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    /** Trabajo pendiente; archivo es null si no se guardó en disco. */
+    private record Trabajo(String descripcion, byte[] datos, Path archivo, long caducaNanos) {
+        boolean esCajon() {
+            return caducaNanos != 0;
+        }
+    }
+
+    private static final ColaImpresion INSTANCE = new ColaImpresion();
+
+    private final BlockingDeque<Trabajo> cola = new LinkedBlockingDeque<>();
+    private final ExecutorService escritorSpool = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "print-spool-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    /** Trabajos encolados más el que se está enviando. */
+    private final AtomicInteger pendientes = new AtomicInteger();
+    private long ultimaSecuencia;
+    private boolean iniciada;
+
+    private ColaImpresion() {
+    }
+
+    public static ColaImpresion getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Recupera los tickets que quedaron en el spool (de una ejecución anterior)
+     * y arranca el hilo de impresión.
+     */
+    public synchronized void iniciar() {
+        if (iniciada) {
+            return;
+        }
+        iniciada = true;
+
+        for (Path archivo : recuperarSpool()) {
+            try {
+                // "<secuencia>-<descripcion>.escpos"
+                String nombre = archivo.getFileName().toString();
+                String descripcion = nombre.substring(nombre.indexOf('-') + 1, nombre.length() - EXTENSION.length());
+                encolar(new Trabajo(descripcion, Files.readAllBytes(archivo), archivo, 0));
+            } catch (IOException e) {
+                System.err.println("[ColaImpresion] Error al leer " + archivo + ": " + e.getMessage());
+            }
+        }
+        if (pendientes.get() > 0) {
+            System.out.println("[ColaImpresion] " + pendientes.get() + " ticket(s) pendientes del spool.");
+        }
+
+        Thread t = new Thread(this::trabajar, "print-spooler");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Cantidad de trabajos que todavía no salieron por la impresora. */
+    public int getPendientes() {
+        return pendientes.get();
+    }
+
+    /**
+     * Encola el ticket sin esperar al disco: el hilo del spool lo guarda y
+     * después lo pasa a la cola, en el mismo orden. Si no se pudo guardar
+     * (disco lleno, permisos) se encola igual, solo en memoria.
+     */
+    void encolarTicket(String descripcion, byte[] datos) {
+        encolarTicket(descripcion, datos, null);
+    }
+
+    /**
+     * Como encolarTicket(descripcion, datos), pero antes de guardarlo en el
+     * spool corre 'antesDeGuardar' en el mismo hilo (para anotar el ticket en
+     * el diario sin que la venta espere ese fsync). Si falla, el ticket se
+     * imprime igual.
+     */
+    void encolarTicket(String descripcion, byte[] datos, Runnable antesDeGuardar) {
+        iniciar();
+        pendientes.incrementAndGet();
+        escritorSpool.execute(() -> {
+            if (antesDeGuardar != null) {
+                try {
+                    antesDeGuardar.run();
+                } catch (RuntimeException e) {
+                    System.err.println("[ColaImpresion] Error antes de guardar " + descripcion + ": "
+                            + e.getMessage());
+                }
+            }
+            Path archivo = null;
+            try {
+                archivo = guardar(descripcion, datos);
+            } catch (IOException e) {
+                System.err.println("[ColaImpresion] Error al guardar en spool, se imprime sin respaldo: "
+                        + e.getMessage());
+            }
+            cola.addLast(new Trabajo(descripcion, datos, archivo, 0));
+        });
+    }
+
+    /**
+     * Encola un comando que solo sirve si sale enseguida (apertura del cajón),
+     * delante de los tickets que estén esperando.
+     */
+    void encolarCajon(byte[] datos) {
+        iniciar();
+        pendientes.incrementAndGet();
+        cola.addFirst(new Trabajo("cajon", datos, null, System.nanoTime() + VIGENCIA_CAJON_NANOS));
+    }
+
+    private void encolar(Trabajo trabajo) {
+        pendientes.incrementAndGet();
+        cola.addLast(trabajo);
+    }
+
+    private void trabajar() {
+        TicketPrintService impresora = new TicketPrintService();
+        while (true) {
+            try {
+                Trabajo trabajo = cola.takeFirst();
+                if (trabajo.esCajon()) {
+                    enviarCajon(impresora, trabajo);
+                } else {
+                    enviarConReintentos(impresora, trabajo);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Envía un ticket; si falla espera y reintenta, atendiendo mientras tanto
+     * los cajones que lleguen. Tras MAX_INTENTOS lo pasa a "fallidos".
+     */
+    private void enviarConReintentos(TicketPrintService impresora, Trabajo trabajo) throws InterruptedException {
+        try {
+            long espera = ESPERA_INICIAL_MS;
+            for (int intento = 1;; intento++) {
+                String error = intentar(impresora, trabajo);
+                if (error == null) {
+                    borrar(trabajo.archivo());
+                    System.out.println("[ColaImpresion] " + trabajo.descripcion() + " enviado a la impresora.");
+                    return;
+                }
+                if (intento >= MAX_INTENTOS) {
+                    apartar(trabajo, error);
+                    return;
+                }
+                System.err.println("[ColaImpresion] " + trabajo.descripcion() + ": " + error
+                        + " Reintento " + intento + " en " + (espera / 1000) + " s.");
+                esperarAtendiendoCajones(impresora, espera);
+                espera = Math.min(espera * 2, ESPERA_MAXIMA_MS);
+            }
+        } finally {
+            pendientes.decrementAndGet();
+        }
+    }
+
+    /**
+     * Intenta enviar el cajón una vez; si falla y todavía está vigente vuelve
+     * al frente de la cola para el próximo turno.
+     */
+    private void enviarCajon(TicketPrintService impresora, Trabajo cajon) throws InterruptedException {
+        if (System.nanoTime() > cajon.caducaNanos()) {
+            System.err.println("[ColaImpresion] " + cajon.descripcion() + " descartado: no se pudo enviar a tiempo.");
+            pendientes.decrementAndGet();
+            return;
+        }
+        String error = intentar(impresora, cajon);
+        if (error == null) {
+            System.out.println("[ColaImpresion] " + cajon.descripcion() + " enviado a la impresora.");
+            pendientes.decrementAndGet();
+            return;
+        }
+        System.err.println("[ColaImpresion] " + cajon.descripcion() + ": " + error);
+        Thread.sleep(ESPERA_INICIAL_MS);
+        cola.addFirst(cajon);
+    }
+
+    /** Espera 'ms' revisando si llegó un cajón, que se envía sin esperar al reintento. */
+    private void esperarAtendiendoCajones(TicketPrintService impresora, long ms) throws InterruptedException {
+        long fin = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms);
+        long resta;
+        while ((resta = fin - System.nanoTime()) > 0) {
+            Trabajo primero = cola.peekFirst();
+            if (primero != null && primero.esCajon() && cola.remove(primero)) {
+                enviarCajon(impresora, primero);
+                continue;
+            }
+            Thread.sleep(Math.min(TimeUnit.NANOSECONDS.toMillis(resta) + 1, REVISION_CAJON_MS));
+        }
+    }
+
+    /** Un envío; una excepción del transporte cuenta como un intento fallido más. */
+    private String intentar(TicketPrintService impresora, Trabajo trabajo) {
+        try {
+            return impresora.enviar(trabajo.datos());
+        } catch (RuntimeException e) {
+            return "Error inesperado: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Pasa un ticket que no se pudo imprimir a la carpeta "fallidos" del spool,
+     * para que no bloquee a los siguientes ni se reenvíe solo al reiniciar.
+     */
+    private void apartar(Trabajo trabajo, String error) {
+        Path dir = AppPaths.getSpoolDir().resolve(FALLIDOS);
+        try {
+            Files.createDirectories(dir);
+            if (trabajo.archivo() != null) {
+                Files.move(trabajo.archivo(), dir.resolve(trabajo.archivo().getFileName()),
+                        StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.write(dir.resolve(String.format("%015d-%s", siguienteSecuencia(), trabajo.descripcion())
+                        + EXTENSION), trabajo.datos());
+            }
+            System.err.println("[ColaImpresion] " + trabajo.descripcion() + " no se pudo imprimir tras "
+                    + MAX_INTENTOS + " intentos (" + error + "); se movió a " + dir + ".");
+        } catch (IOException e) {
+            System.err.println("[ColaImpresion] " + trabajo.descripcion() + " descartado tras " + MAX_INTENTOS
+                    + " intentos; error al moverlo a " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Escribe el trabajo en un archivo temporal, lo fuerza a disco y lo
+     * renombra: el spool nunca tiene tickets a medio escribir. El nombre empieza
+     * con una secuencia para reenviarlos en orden.
+     */
+    private Path guardar(String descripcion, byte[] datos) throws IOException {
+        Path dir = AppPaths.getSpoolDir();
+        Files.createDirectories(dir);
+        String nombre = String.format("%015d-%s", siguienteSecuencia(), descripcion);
+        Path tmp = dir.resolve(nombre + ".tmp");
+        Path destino = dir.resolve(nombre + EXTENSION);
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(datos);
+            while (buffer.hasRemaining()) {
+                ch.write(buffer);
+            }
+            ch.force(true);
+        }
+        try {
+            Files.move(tmp, destino, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return destino;
+    }
+
+    private synchronized long siguienteSecuencia() {
+        ultimaSecuencia = Math.max(System.currentTimeMillis(), ultimaSecuencia + 1);
+        return ultimaSecuencia;
+    }
+
+    /** Tickets guardados en el spool, en orden; borra los temporales a medio escribir. */
+    private List<Path> recuperarSpool() {
+        List<Path> archivos = new ArrayList<>();
+        Path dir = AppPaths.getSpoolDir();
+        if (!Files.isDirectory(dir)) {
+            return archivos;
+        }
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                String nombre = p.getFileName().toString();
+                if (nombre.endsWith(EXTENSION)) {
+                    archivos.add(p);
+                } else if (nombre.endsWith(".tmp")) {
+                    borrar(p);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[ColaImpresion] Error al leer el spool: " + e.getMessage());
+        }
+        archivos.sort(null);
+        return archivos;
+    }
+
+    private void borrar(Path archivo) {
+        if (archivo == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            System.err.println("[ColaImpresion] Error al borrar " + archivo + ": " + e.getMessage());
+        }
+    }
+}
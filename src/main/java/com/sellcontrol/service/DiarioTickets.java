@@ -0,0 +1,450 @@
+package com.sellcontrol.service;
+
+import com.sellcontrol.config.AppPaths;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diario de tickets: cada ticket de venta generado se agrega, tal cual se
+ * mandó a la impresora, a archivos de segmento en AppPaths.getTicketsDir().
+ * Reimprimir una venta copia esos bytes, sin consultar la base de datos ni
+ * volver a generar el ticket, así que la copia es idéntica al original aunque
+ * después cambie la configuración del ticket o el nombre de un producto.
+ *
+ * Cada registro guarda el SHA-256 del registro anterior encadenado con el
+ * suyo, de modo que alterar o borrar un ticket ya escrito rompe la cadena.
+ *
+ * Al abrir solo se mapea el último segmento y se busca el final de sus
+ * registros, así que registrar() está disponible enseguida. La verificación
+ * de la cadena y el índice de los segmentos anteriores se arman después, en
+ * el hilo de abrirEnFondo() y sin tener el lock; mientras tanto leer() de una
+ * venta vieja devuelve null. Los segmentos viejos se mapean recién al
+ * leerlos.
+ *
+ * Retención: al abrir se borran los segmentos cuyo último ticket tiene más de
+ * RETENCION_DIAS. El hash del último registro borrado queda en el archivo
+ * ancla, para que la cadena siga verificándose desde el primer segmento que
+ * quedó.
+ *
+ * Formato de un registro: marca (int) | venta_id (int) | fecha en ms (long) |
+ * largo (int) | hash (32 bytes) | datos. La marca se escribe al final: un
+ * registro sin marca (cierre a medio escribir) se ignora.
+ */
+public final class DiarioTickets {
+
+    private static final int MARCA = 0x544B5431; // "TKT1"
+    private static final int LARGO_HASH = 32;
+    private static final int ENCABEZADO = 4 + 4 + 8 + 4 + LARGO_HASH;
+    private static final int TAMANO_SEGMENTO = 8 * 1024 * 1024;
+    private static final String PREFIJO = "diario-";
+    private static final String EXTENSION = ".tkt";
+    /** Número del último segmento borrado por retención y hash de su último registro. */
+    private static final String ANCLA = "diario-ancla.bin";
+    private static final int RETENCION_DIAS = 180;
+
+    /** Dónde está el último ticket de una venta (segmento = número del archivo). */
+    private record Ubicacion(int segmento, int posicion, int largo) {
+    }
+
+    /** Lo que queda por verificar en segundo plano: segmentos completos y el actual hasta 'hasta'. */
+    private record Pendiente(List<Path> archivos, byte[] hashInicial, int hasta) {
+    }
+
+    private static final DiarioTickets INSTANCE = new DiarioTickets();
+
+    private final Map<Integer, Ubicacion> porVenta = new HashMap<>();
+    /** Segmentos anteriores al actual, mapeados (solo lectura) al leer de ellos. */
+    private final Map<Integer, ByteBuffer> anteriores = new HashMap<>();
+    /** Segmento donde se escribe; null si el diario está deshabilitado. */
+    private MappedByteBuffer actual;
+    private int numeroActual;
+    /** Posición de escritura en el segmento actual. */
+    private int posicion;
+    private byte[] ultimoHash = new byte[LARGO_HASH];
+    private boolean preparado;
+    private Pendiente pendiente;
+
+    private DiarioTickets() {
+    }
+
+    public static DiarioTickets getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Prepara el diario para escribir y después verifica la cadena e indexa
+     * los tickets anteriores, sin bloquear registrar() ni leer(). Si algo
+     * falla el diario queda deshabilitado y la impresión sigue funcionando
+     * sin él.
+     */
+    public void abrir() {
+        preparar();
+        Pendiente p;
+        synchronized (this) {
+            p = pendiente;
+            pendiente = null;
+        }
+        if (p != null) {
+            verificarEIndexar(p);
+        }
+    }
+
+    /**
+     * Abre el diario en un hilo aparte, para no demorar el inicio: verificar
+     * la cadena lee todos los tickets guardados.
+     */
+    public void abrirEnFondo() {
+        Thread t = new Thread(this::abrir, "ticket-journal");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Agrega el ticket de una venta al diario. Si la venta ya tenía ticket, el
+     * índice apunta al nuevo. Espera a que el registro esté en disco (y, al
+     * arrancar, a preparar()), así que no se llama desde el hilo de JavaFX:
+     * TicketPrintService lo hace en el hilo del spool.
+     */
+    public synchronized void registrar(int ventaId, byte[] datos) {
+        preparar();
+        if (actual == null) {
+            return; // deshabilitado
+        }
+        try {
+            if (posicion + ENCABEZADO + datos.length > actual.capacity()) {
+                nuevoSegmento(numeroActual + 1, ENCABEZADO + datos.length);
+            }
+            long fecha = System.currentTimeMillis();
+            byte[] hash = encadenar(ultimoHash, ventaId, fecha, ByteBuffer.wrap(datos));
+
+            int inicio = posicion;
+            actual.putInt(inicio + 4, ventaId);
+            actual.putLong(inicio + 8, fecha);
+            actual.putInt(inicio + 16, datos.length);
+            actual.put(inicio + 20, hash);
+            actual.put(inicio + ENCABEZADO, datos);
+            actual.putInt(inicio, MARCA); // el registro queda válido recién aquí
+            actual.force(inicio, ENCABEZADO + datos.length);
+
+            posicion = inicio + ENCABEZADO + datos.length;
+            ultimoHash = hash;
+            porVenta.put(ventaId, new Ubicacion(numeroActual, inicio + ENCABEZADO, datos.length));
+        } catch (IOException e) {
+            System.err.println("[DiarioTickets] Error al registrar venta #" + ventaId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Bytes del último ticket registrado para la venta, como vista de solo
+     * lectura sobre el segmento mapeado (sin copiar), o null si la venta no
+     * está en el diario (o todavía no se indexó su segmento).
+     */
+    public synchronized ByteBuffer leer(int ventaId) {
+        preparar();
+        Ubicacion u = porVenta.get(ventaId);
+        if (u == null) {
+            return null;
+        }
+        try {
+            ByteBuffer seg = u.segmento() == numeroActual ? actual : anterior(u.segmento());
+            return seg.slice(u.posicion(), u.largo()).asReadOnlyBuffer();
+        } catch (IOException e) {
+            System.err.println("[DiarioTickets] Error al leer venta #" + ventaId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Aplica la retención y mapea el último segmento para escribir. Solo
+     * recorre los encabezados del último segmento; la verificación queda en
+     * 'pendiente'.
+     */
+    private synchronized void preparar() {
+        if (preparado) {
+            return;
+        }
+        preparado = true;
+        try {
+            Files.createDirectories(AppPaths.getTicketsDir());
+            byte[] hashInicial = new byte[LARGO_HASH];
+            List<Path> archivos = aplicarRetencion(listarSegmentos(), hashInicial);
+            if (archivos.isEmpty()) {
+                ultimoHash = hashInicial;
+                nuevoSegmento(siguienteNumeroTrasAncla(), 0);
+                pendiente = new Pendiente(List.of(), hashInicial, 0);
+            } else {
+                Path ultimo = archivos.get(archivos.size() - 1);
+                numeroActual = numero(ultimo);
+                try (FileChannel ch = FileChannel.open(ultimo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    actual = ch.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(ch.size(), TAMANO_SEGMENTO));
+                }
+                // Si el último segmento está vacío la cadena sigue del anterior
+                ultimoHash = hashInicial.clone();
+                if (archivos.size() > 1) {
+                    ultimaFecha(archivos.get(archivos.size() - 2), ultimoHash);
+                }
+                posicion = finDeRegistros(actual);
+                pendiente = new Pendiente(archivos, hashInicial, posicion);
+            }
+        } catch (IOException e) {
+            System.err.println("[DiarioTickets] Error al abrir el diario, queda deshabilitado: " + e.getMessage());
+            actual = null;
+        }
+    }
+
+    /**
+     * Recorre los encabezados del segmento hasta el primer registro sin marca;
+     * deja ultimoHash en el hash del último registro, si hay alguno.
+     *
+     * @return la posición de escritura
+     */
+    private int finDeRegistros(ByteBuffer seg) {
+        int pos = 0;
+        while (pos + ENCABEZADO <= seg.capacity() && seg.getInt(pos) == MARCA) {
+            int largo = seg.getInt(pos + 16);
+            if (largo < 0 || pos + ENCABEZADO + largo > seg.capacity()) {
+                break;
+            }
+            seg.get(pos + 20, ultimoHash);
+            pos += ENCABEZADO + largo;
+        }
+        return pos;
+    }
+
+    /**
+     * Recorre los segmentos, verifica la cadena de hashes y agrega al índice
+     * las ventas que no se registraron después de abrir. Corre sin el lock:
+     * lee los archivos, no los segmentos mapeados.
+     */
+    private void verificarEIndexar(Pendiente p) {
+        Map<Integer, Ubicacion> indice = new HashMap<>();
+        byte[] anterior = p.hashInicial();
+        int registros = 0;
+        try {
+            for (int i = 0; i < p.archivos().size(); i++) {
+                Path archivo = p.archivos().get(i);
+                int limite = i == p.archivos().size() - 1 ? p.hasta() : Integer.MAX_VALUE;
+                try (FileChannel ch = FileChannel.open(archivo, StandardOpenOption.READ)) {
+                    ByteBuffer enc = ByteBuffer.allocate(ENCABEZADO);
+                    long pos = 0;
+                    while (pos + ENCABEZADO <= Math.min(ch.size(), limite) && leerCompleto(ch, enc.clear(), pos)
+                            && enc.getInt(0) == MARCA) {
+                        int ventaId = enc.getInt(4);
+                        long fecha = enc.getLong(8);
+                        int largo = enc.getInt(16);
+                        ByteBuffer datos = largo >= 0 && pos + ENCABEZADO + largo <= ch.size()
+                                ? ByteBuffer.allocate(largo) : null;
+                        if (datos == null || !leerCompleto(ch, datos, pos + ENCABEZADO)) {
+                            System.err.println("[DiarioTickets] Registro dañado en " + archivo + " posición " + pos + ".");
+                            break;
+                        }
+                        byte[] guardado = new byte[LARGO_HASH];
+                        enc.get(20, guardado);
+                        byte[] esperado = encadenar(anterior, ventaId, fecha, datos.flip());
+                        if (!Arrays.equals(guardado, esperado)) {
+                            System.err.println("[DiarioTickets] ALERTA: el ticket de la venta #" + ventaId + " en "
+                                    + archivo + " (posición " + pos + ") no coincide con la cadena: el diario fue modificado.");
+                        }
+                        anterior = guardado;
+                        indice.put(ventaId, new Ubicacion(numero(archivo), (int) pos + ENCABEZADO, largo));
+                        pos += ENCABEZADO + largo;
+                        registros++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[DiarioTickets] Error al verificar el diario: " + e.getMessage());
+        }
+        synchronized (this) {
+            // Lo registrado mientras tanto es más nuevo: no se pisa
+            for (Map.Entry<Integer, Ubicacion> e : indice.entrySet()) {
+                porVenta.putIfAbsent(e.getKey(), e.getValue());
+            }
+        }
+        System.out.println("[DiarioTickets] " + registros + " tickets verificados en " + p.archivos().size()
+                + " segmento(s).");
+    }
+
+    private static boolean leerCompleto(FileChannel ch, ByteBuffer buffer, long pos) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = ch.read(buffer, pos + buffer.position());
+            if (n < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Borra, en orden, los segmentos (salvo el último) cuyo último ticket es
+     * anterior a la retención, guardando antes el ancla. También borra los que
+     * el ancla ya daba por borrados (cierre entre el ancla y el borrado).
+     *
+     * @param hashInicial recibe el hash con que empieza la cadena de lo que queda
+     * @return los segmentos que quedan
+     */
+    private List<Path> aplicarRetencion(List<Path> archivos, byte[] hashInicial) throws IOException {
+        Path ancla = AppPaths.getTicketsDir().resolve(ANCLA);
+        int anclado = 0;
+        if (Files.exists(ancla)) {
+            ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(ancla));
+            anclado = b.getInt();
+            b.get(hashInicial);
+        }
+        long limite = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(RETENCION_DIAS);
+        List<Path> quedan = new ArrayList<>();
+        for (int i = 0; i < archivos.size(); i++) {
+            Path archivo = archivos.get(i);
+            int n = numero(archivo);
+            if (n <= anclado) {
+                Files.deleteIfExists(archivo);
+                continue;
+            }
+            boolean esUltimo = i == archivos.size() - 1;
+            if (!quedan.isEmpty() || esUltimo) {
+                quedan.add(archivo);
+                continue;
+            }
+            // Prefijo todavía sin conservar: se borra si su último ticket venció
+            // (o si está vacío, y entonces la cadena sigue con el mismo hash)
+            byte[] hash = hashInicial.clone();
+            long ultimaFecha = ultimaFecha(archivo, hash);
+            if (ultimaFecha < limite) {
+                guardarAncla(ancla, n, hash);
+                Files.deleteIfExists(archivo);
+                System.arraycopy(hash, 0, hashInicial, 0, LARGO_HASH);
+                anclado = n;
+                System.out.println("[DiarioTickets] Segmento " + archivo.getFileName() + " borrado por retención ("
+                        + RETENCION_DIAS + " días).");
+            } else {
+                quedan.add(archivo);
+            }
+        }
+        return quedan;
+    }
+
+    /**
+     * Fecha (ms) y hash del último registro del segmento, leyendo solo los
+     * encabezados; -1 (y 'hash' sin tocar) si no tiene registros.
+     */
+    private static long ultimaFecha(Path archivo, byte[] hash) throws IOException {
+        long fecha = -1;
+        try (FileChannel ch = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            ByteBuffer enc = ByteBuffer.allocate(ENCABEZADO);
+            long pos = 0;
+            while (pos + ENCABEZADO <= ch.size() && leerCompleto(ch, enc.clear(), pos) && enc.getInt(0) == MARCA) {
+                int largo = enc.getInt(16);
+                if (largo < 0) {
+                    break;
+                }
+                fecha = enc.getLong(8);
+                enc.get(20, hash);
+                pos += ENCABEZADO + largo;
+            }
+        }
+        return fecha;
+    }
+
+    /** Escribe el ancla en un temporal y lo renombra, para no dejarla a medias. */
+    private static void guardarAncla(Path ancla, int numero, byte[] hash) throws IOException {
+        Path tmp = ancla.resolveSibling(ANCLA + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer b = ByteBuffer.allocate(4 + LARGO_HASH).putInt(numero).put(hash).flip();
+            while (b.hasRemaining()) {
+                ch.write(b);
+            }
+            ch.force(true);
+        }
+        try {
+            Files.move(tmp, ancla, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, ancla, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Si todos los segmentos se borraron, el siguiente sigue la numeración del ancla. */
+    private int siguienteNumeroTrasAncla() throws IOException {
+        Path ancla = AppPaths.getTicketsDir().resolve(ANCLA);
+        return Files.exists(ancla) ? ByteBuffer.wrap(Files.readAllBytes(ancla)).getInt() + 1 : 1;
+    }
+
+    /** Segmento anterior al actual, mapeado de solo lectura la primera vez que se lee. */
+    private ByteBuffer anterior(int numero) throws IOException {
+        ByteBuffer seg = anteriores.get(numero);
+        if (seg == null) {
+            try (FileChannel ch = FileChannel.open(archivo(numero), StandardOpenOption.READ)) {
+                seg = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            }
+            anteriores.put(numero, seg);
+        }
+        return seg;
+    }
+
+    /** Crea y mapea el segmento 'numero' para escribir, con lugar para al menos 'minimo' bytes. */
+    private void nuevoSegmento(int numero, int minimo) throws IOException {
+        MappedByteBuffer seg;
+        try (FileChannel ch = FileChannel.open(archivo(numero), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            seg = ch.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(TAMANO_SEGMENTO, minimo));
+        }
+        if (actual != null) {
+            anteriores.put(numeroActual, actual);
+        }
+        actual = seg;
+        numeroActual = numero;
+        posicion = 0;
+    }
+
+    private static Path archivo(int numero) {
+        return AppPaths.getTicketsDir().resolve(String.format("%s%06d%s", PREFIJO, numero, EXTENSION));
+    }
+
+    /** Número de segmento a partir del nombre "diario-000123.tkt". */
+    private static int numero(Path archivo) {
+        String nombre = archivo.getFileName().toString();
+        return Integer.parseInt(nombre.substring(PREFIJO.length(), nombre.length() - EXTENSION.length()));
+    }
+
+    /** Segmentos existentes, en orden. */
+    private List<Path> listarSegmentos() throws IOException {
+        List<Path> archivos = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(AppPaths.getTicketsDir(), PREFIJO + "*" + EXTENSION)) {
+            for (Path p : ds) {
+                archivos.add(p);
+            }
+        }
+        archivos.sort(null);
+        return archivos;
+    }
+
+    /** SHA-256 del hash anterior junto con los campos y los bytes del ticket. */
+    private static byte[] encadenar(byte[] anterior, int ventaId, long fecha, ByteBuffer datos) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(anterior);
+            md.update(ByteBuffer.allocate(12).putInt(ventaId).putLong(fecha).array());
+            md.update(datos);
+            return md.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -1,15 +1,14 @@
 package com.sellcontrol.service;
 
-import com.sellcontrol.model.Gasto;
-import com.sellcontrol.model.Merma;
-import com.sellcontrol.model.Venta;
+import com.sellcontrol.db.DbExecutor;
+import com.sellcontrol.model.ReportSnapshot;
 
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 import java.io.File;
 import java.io.FileOutputStream;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Servicio de exportación de reportes a Excel (.xlsx).
@@ -19,8 +18,14 @@ public class ExcelExportService {
 
     private final ReporteService reporteService = new ReporteService();
 
+    /** Filas que SXSSF mantiene en memoria por hoja; las demás ya están en disco. */
+    private static final int VENTANA_FILAS = 100;
+
     /**
      * Exporta un reporte completo al archivo destino.
+     * Las filas se leen por lotes (ver RecorridoPorLotes) y se escriben con
+     * SXSSF, así la memoria no crece con el tamaño del rango y la conexión no
+     * queda retenida mientras se escribe el archivo.
      *
      * @param desde   fecha inicio (yyyy-MM-dd)
      * @param hasta   fecha fin (yyyy-MM-dd)
@@ -28,7 +33,8 @@ public class ExcelExportService {
      * @return null si OK, o mensaje de error
      */
     public String exportar(String desde, String hasta, File destino) {
-        try (Workbook wb = new XSSFWorkbook()) {
+        SXSSFWorkbook wb = new SXSSFWorkbook(VENTANA_FILAS);
+        try (wb) {
 
             // Estilos
             CellStyle headerStyle = crearEstiloEncabezado(wb);
@@ -39,111 +45,96 @@ public class ExcelExportService {
             boldStyle.setFont(boldFont);
 
             // Datos
-            List<Venta> ventas = reporteService.ventasPorRango(desde, hasta);
-            List<Gasto> gastos = reporteService.gastosPorRango(desde, hasta);
-            List<Merma> mermas = reporteService.mermasPorRango(desde, hasta);
-
-            double totalVentas = reporteService.totalVentasTodas(desde, hasta);
-            double cobradas = reporteService.totalVentasCobradas(desde, hasta);
-            double pendientes = totalVentas - cobradas;
-            double efectivo = reporteService.totalPorMetodoPago(desde, hasta, "EFECTIVO");
-            double tarjeta = reporteService.totalPorMetodoPago(desde, hasta, "TARJETA");
-            double sinpe = reporteService.totalPorMetodoPago(desde, hasta, "SINPE");
-            double totalGastos = reporteService.totalGastos(desde, hasta);
-            double totalMerma = reporteService.totalMerma(desde, hasta);
-            double ganancia = reporteService.gananciaReal(desde, hasta);
+            ReportSnapshot resumenDatos = reporteService.snapshot(desde, hasta);
+            if (resumenDatos == null)
+                return "Error al exportar: no se pudieron calcular los totales.";
 
             // === Hoja: Resumen ===
             Sheet resumen = wb.createSheet("Resumen");
+            AnchoColumnas anchoResumen = new AnchoColumnas(2);
             int r = 0;
 
             Row titulo = resumen.createRow(r++);
-            Cell cTitulo = titulo.createCell(0);
-            cTitulo.setCellValue("Reporte POS SellControl");
-            cTitulo.setCellStyle(boldStyle);
+            anchoResumen.texto(titulo, 0, "Reporte POS SellControl").setCellStyle(boldStyle);
 
             Row periodo = resumen.createRow(r++);
-            periodo.createCell(0).setCellValue("Período:");
-            periodo.createCell(1).setCellValue(desde + " a " + hasta);
+            anchoResumen.texto(periodo, 0, "Período:");
+            anchoResumen.texto(periodo, 1, desde + " a " + hasta);
 
             r++; // fila vacía
 
-            crearFilaResumen(resumen, r++, "Total Ventas", totalVentas, boldStyle, moneyStyle);
-            crearFilaResumen(resumen, r++, "Ventas Cobradas", cobradas, boldStyle, moneyStyle);
-            crearFilaResumen(resumen, r++, "Ventas Pendientes", pendientes, boldStyle, moneyStyle);
+            crearFilaResumen(resumen, anchoResumen, r++, "Total Ventas", resumenDatos.getTotalVentas(), boldStyle, moneyStyle);
+            crearFilaResumen(resumen, anchoResumen, r++, "Ventas Cobradas", resumenDatos.getCobradas(), boldStyle, moneyStyle);
+            crearFilaResumen(resumen, anchoResumen, r++, "Ventas Pendientes", resumenDatos.getPendientes(), boldStyle, moneyStyle);
 
             r++;
-            crearFilaResumen(resumen, r++, "Efectivo", efectivo, boldStyle, moneyStyle);
-            crearFilaResumen(resumen, r++, "Tarjeta", tarjeta, boldStyle, moneyStyle);
-            crearFilaResumen(resumen, r++, "SINPE", sinpe, boldStyle, moneyStyle);
+            crearFilaResumen(resumen, anchoResumen, r++, "Efectivo", resumenDatos.getEfectivo(), boldStyle, moneyStyle);
+            crearFilaResumen(resumen, anchoResumen, r++, "Tarjeta", resumenDatos.getTarjeta(), boldStyle, moneyStyle);
+            crearFilaResumen(resumen, anchoResumen, r++, "SINPE", resumenDatos.getSinpe(), boldStyle, moneyStyle);
 
             r++;
-            crearFilaResumen(resumen, r++, "Total Gastos", totalGastos, boldStyle, moneyStyle);
-            crearFilaResumen(resumen, r++, "Total Merma", totalMerma, boldStyle, moneyStyle);
+            crearFilaResumen(resumen, anchoResumen, r++, "Total Gastos", resumenDatos.getTotalGastos(), boldStyle, moneyStyle);
+            crearFilaResumen(resumen, anchoResumen, r++, "Total Merma", resumenDatos.getTotalMerma(), boldStyle, moneyStyle);
 
             r++;
-            crearFilaResumen(resumen, r++, "GANANCIA REAL", ganancia, boldStyle, moneyStyle);
+            crearFilaResumen(resumen, anchoResumen, r++, "GANANCIA REAL", resumenDatos.getGanancia(), boldStyle, moneyStyle);
 
-            resumen.autoSizeColumn(0);
-            resumen.autoSizeColumn(1);
+            anchoResumen.aplicar(resumen);
 
             // === Hoja: Ventas ===
             Sheet hVentas = wb.createSheet("Ventas");
             String[] colVentas = { "ID", "Fecha/Hora", "Cajero", "Total", "Método Pago", "Estado", "Cliente" };
-            crearEncabezado(hVentas, colVentas, headerStyle);
-
-            int rv = 1;
-            for (Venta v : ventas) {
-                Row row = hVentas.createRow(rv++);
-                row.createCell(0).setCellValue(v.getId());
-                row.createCell(1).setCellValue(v.getFechaHora());
-                row.createCell(2).setCellValue(v.getNombreUsuario());
-                Cell cTotal = row.createCell(3);
-                cTotal.setCellValue(v.getTotal());
-                cTotal.setCellStyle(moneyStyle);
-                row.createCell(4).setCellValue(v.getMetodoPago());
-                row.createCell(5).setCellValue(v.getEstado());
-                row.createCell(6).setCellValue(v.getClienteNombre() != null ? v.getClienteNombre() : "");
-            }
-            for (int i = 0; i < colVentas.length; i++)
-                hVentas.autoSizeColumn(i);
+            AnchoColumnas anchoVentas = crearEncabezado(hVentas, colVentas, headerStyle);
+
+            int[] rv = { 1 };
+            boolean okVentas = reporteService.recorrerVentas(desde, hasta, v -> {
+                Row row = hVentas.createRow(rv[0]++);
+                anchoVentas.numero(row, 0, v.getId());
+                anchoVentas.texto(row, 1, v.getFechaHora());
+                anchoVentas.texto(row, 2, v.getNombreUsuario());
+                anchoVentas.moneda(row, 3, v.getTotal(), moneyStyle);
+                anchoVentas.texto(row, 4, v.getMetodoPago());
+                anchoVentas.texto(row, 5, v.getEstado());
+                anchoVentas.texto(row, 6, v.getClienteNombre() != null ? v.getClienteNombre() : "");
+            });
+            if (!okVentas)
+                return "Error al exportar: no se pudieron leer las ventas.";
+            anchoVentas.aplicar(hVentas);
 
             // === Hoja: Gastos ===
             Sheet hGastos = wb.createSheet("Gastos");
             String[] colGastos = { "ID", "Tipo", "Monto", "Descripción", "Fecha" };
-            crearEncabezado(hGastos, colGastos, headerStyle);
-
-            int rg = 1;
-            for (Gasto g : gastos) {
-                Row row = hGastos.createRow(rg++);
-                row.createCell(0).setCellValue(g.getId());
-                row.createCell(1).setCellValue(g.getTipo());
-                Cell cMonto = row.createCell(2);
-                cMonto.setCellValue(g.getMonto());
-                cMonto.setCellStyle(moneyStyle);
-                row.createCell(3).setCellValue(g.getDescripcion());
-                row.createCell(4).setCellValue(g.getFechaHora());
-            }
-            for (int i = 0; i < colGastos.length; i++)
-                hGastos.autoSizeColumn(i);
+            AnchoColumnas anchoGastos = crearEncabezado(hGastos, colGastos, headerStyle);
+
+            int[] rg = { 1 };
+            boolean okGastos = reporteService.recorrerGastos(desde, hasta, g -> {
+                Row row = hGastos.createRow(rg[0]++);
+                anchoGastos.numero(row, 0, g.getId());
+                anchoGastos.texto(row, 1, g.getTipo());
+                anchoGastos.moneda(row, 2, g.getMonto(), moneyStyle);
+                anchoGastos.texto(row, 3, g.getDescripcion());
+                anchoGastos.texto(row, 4, g.getFechaHora());
+            });
+            if (!okGastos)
+                return "Error al exportar: no se pudieron leer los gastos.";
+            anchoGastos.aplicar(hGastos);
 
             // === Hoja: Merma ===
             Sheet hMerma = wb.createSheet("Merma");
             String[] colMerma = { "ID", "Descripción", "Monto Aprox.", "Fecha" };
-            crearEncabezado(hMerma, colMerma, headerStyle);
-
-            int rm = 1;
-            for (Merma m : mermas) {
-                Row row = hMerma.createRow(rm++);
-                row.createCell(0).setCellValue(m.getId());
-                row.createCell(1).setCellValue(m.getDescripcion());
-                Cell cMonto = row.createCell(2);
-                cMonto.setCellValue(m.getMontoAproximado());
-                cMonto.setCellStyle(moneyStyle);
-                row.createCell(3).setCellValue(m.getFechaHora());
-            }
-            for (int i = 0; i < colMerma.length; i++)
-                hMerma.autoSizeColumn(i);
+            AnchoColumnas anchoMerma = crearEncabezado(hMerma, colMerma, headerStyle);
+
+            int[] rm = { 1 };
+            boolean okMerma = reporteService.recorrerMermas(desde, hasta, m -> {
+                Row row = hMerma.createRow(rm[0]++);
+                anchoMerma.numero(row, 0, m.getId());
+                anchoMerma.texto(row, 1, m.getDescripcion());
+                anchoMerma.moneda(row, 2, m.getMontoAproximado(), moneyStyle);
+                anchoMerma.texto(row, 3, m.getFechaHora());
+            });
+            if (!okMerma)
+                return "Error al exportar: no se pudo leer la merma.";
+            anchoMerma.aplicar(hMerma);
 
             // Escribir archivo
             try (FileOutputStream fos = new FileOutputStream(destino)) {
@@ -157,27 +148,34 @@ public class ExcelExportService {
             System.err.println("[ExcelExport] Error: " + e.getMessage());
             e.printStackTrace();
             return "Error al exportar: " + e.getMessage();
+        } finally {
+            // Borra los archivos temporales de SXSSF
+            wb.dispose();
         }
     }
 
-    private void crearEncabezado(Sheet sheet, String[] columnas, CellStyle style) {
+    /**
+     * Exporta el reporte en el hilo de fondo (DbExecutor.submitLargo).
+     *
+     * @return future con null si OK, o mensaje de error
+     */
+    public CompletableFuture<String> exportarAsync(String desde, String hasta, File destino) {
+        return DbExecutor.submitLargo(() -> exportar(desde, hasta, destino));
+    }
+
+    private AnchoColumnas crearEncabezado(Sheet sheet, String[] columnas, CellStyle style) {
+        AnchoColumnas ancho = new AnchoColumnas(columnas.length);
         Row header = sheet.createRow(0);
-        for (int i = 0; i < columnas.length; i++) {
-            Cell cell = header.createCell(i);
-            cell.setCellValue(columnas[i]);
-            cell.setCellStyle(style);
-        }
+        for (int i = 0; i < columnas.length; i++)
+            ancho.texto(header, i, columnas[i]).setCellStyle(style);
+        return ancho;
     }
 
-    private void crearFilaResumen(Sheet sheet, int rowIdx, String label, double value,
+    private void crearFilaResumen(Sheet sheet, AnchoColumnas ancho, int rowIdx, String label, double value,
             CellStyle labelStyle, CellStyle valueStyle) {
         Row row = sheet.createRow(rowIdx);
-        Cell cLabel = row.createCell(0);
-        cLabel.setCellValue(label);
-        cLabel.setCellStyle(labelStyle);
-        Cell cValue = row.createCell(1);
-        cValue.setCellValue(value);
-        cValue.setCellStyle(valueStyle);
+        ancho.texto(row, 0, label).setCellStyle(labelStyle);
+        ancho.moneda(row, 1, value, valueStyle);
     }
 
     private CellStyle crearEstiloEncabezado(Workbook wb) {
@@ -198,4 +196,51 @@ public class ExcelExportService {
         style.setDataFormat(fmt.getFormat("₡#,##0.00"));
         return style;
     }
+
+    /**
+     * Crea celdas y recuerda el texto más largo de cada columna, para fijar los
+     * anchos al final sin autoSizeColumn (que mide cada celda con AWT y con
+     * SXSSF solo vería las filas que siguen en memoria).
+     */
+    private static final class AnchoColumnas {
+
+        private static final int MAX_CARACTERES = 80;
+
+        private final int[] largos;
+
+        AnchoColumnas(int columnas) {
+            this.largos = new int[columnas];
+        }
+
+        Cell texto(Row row, int col, String valor) {
+            Cell cell = row.createCell(col);
+            cell.setCellValue(valor);
+            medir(col, valor != null ? valor.length() : 0);
+            return cell;
+        }
+
+        void numero(Row row, int col, int valor) {
+            row.createCell(col).setCellValue(valor);
+            medir(col, String.valueOf(valor).length());
+        }
+
+        void moneda(Row row, int col, double valor, CellStyle style) {
+            Cell cell = row.createCell(col);
+            cell.setCellValue(valor);
+            cell.setCellStyle(style);
+            // "₡" + miles con separador + 2 decimales
+            medir(col, String.format("%,.2f", valor).length() + 1);
+        }
+
+        private void medir(int col, int largo) {
+            if (largo > largos[col])
+                largos[col] = largo;
+        }
+
+        /** Fija el ancho de cada columna (unidades de 1/256 de carácter). */
+        void aplicar(Sheet sheet) {
+            for (int i = 0; i < largos.length; i++)
+                sheet.setColumnWidth(i, (Math.min(largos[i], MAX_CARACTERES) + 2) * 256);
+        }
+    }
 }
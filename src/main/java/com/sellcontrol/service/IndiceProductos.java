@@ -0,0 +1,228 @@
+package com.sellcontrol.service;
+
+import com.sellcontrol.model.Producto;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Índice de búsqueda del catálogo por prefijo de palabra y prefijo de ID.
+ * Los nombres se normalizan (NFD, sin tildes, minúsculas), así "limon"
+ * encuentra "Limón" y "pina" encuentra "Piña".
+ *
+ * Cada palabra del nombre se guarda en un TreeMap ordenado, de modo que
+ * buscar un prefijo es recorrer un subMap en lugar de todo el catálogo.
+ * Se actualiza por producto (agregar/quitar) cuando cambia el catálogo.
+ * No es thread-safe: lo protege CatalogoProductos.
+ */
+class IndiceProductos {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Orden del resultado: mejor coincidencia primero
+    private static final int RANGO_ID_EXACTO = 0;
+    private static final int RANGO_ID_PREFIJO = 1;
+    private static final int RANGO_NOMBRE_PREFIJO = 2;
+    private static final int RANGO_PALABRA = 3;
+
+    /** palabra normalizada -> IDs de productos que la contienen. */
+    private final TreeMap<String, Set<Integer>> palabras = new TreeMap<>();
+    /** ID como texto -> ID. */
+    private final TreeMap<String, Integer> ids = new TreeMap<>();
+    /** Nombre normalizado de cada producto indexado. */
+    private final Map<Integer, String> nombres = new HashMap<>();
+    /**
+     * Posición de cada ID en orden alfabético, para ordenar resultados
+     * comparando enteros. Se regenera en la primera búsqueda tras un cambio.
+     */
+    private Map<Integer, Integer> posicion;
+    private int[] idEnPosicion;
+    /** Trigramas de las palabras, para la búsqueda tolerante a errores. */
+    private final IndiceTrigramas trigramas = new IndiceTrigramas();
+
+    /** Texto en minúsculas y sin tildes. */
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinTildes = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return sinTildes.toLowerCase(Locale.ROOT).trim();
+    }
+
+    private static String[] palabrasDe(String normalizado) {
+        return normalizado.isEmpty() ? new String[0] : SEPARADORES.split(normalizado);
+    }
+
+    void agregar(Producto p) {
+        quitar(p.getId());
+        posicion = null;
+        String nombre = normalizar(p.getNombre());
+        nombres.put(p.getId(), nombre);
+        ids.put(String.valueOf(p.getId()), p.getId());
+        for (String palabra : palabrasDe(nombre)) {
+            if (!palabra.isEmpty()) {
+                palabras.computeIfAbsent(palabra, k -> {
+                    trigramas.agregar(k);
+                    return new HashSet<>();
+                }).add(p.getId());
+            }
+        }
+    }
+
+    void quitar(int id) {
+        String nombre = nombres.remove(id);
+        if (nombre == null) {
+            return;
+        }
+        ids.remove(String.valueOf(id));
+        posicion = null;
+        for (String palabra : palabrasDe(nombre)) {
+            Set<Integer> conPalabra = palabras.get(palabra);
+            if (conPalabra != null && conPalabra.remove(id) && conPalabra.isEmpty()) {
+                palabras.remove(palabra);
+                trigramas.quitar(palabra);
+            }
+        }
+    }
+
+    void limpiar() {
+        palabras.clear();
+        ids.clear();
+        nombres.clear();
+        trigramas.limpiar();
+        posicion = null;
+    }
+
+    /**
+     * IDs que coinciden con la consulta, ordenados por relevancia: ID exacto,
+     * prefijo de ID, nombre que empieza con la consulta y luego el resto.
+     * Con varias palabras, cada una debe ser prefijo de alguna palabra del
+     * nombre. Los empates se ordenan por nombre.
+     */
+    List<Integer> buscar(String consulta) {
+        String q = normalizar(consulta);
+        if (q.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, Integer> rangos = new HashMap<>();
+
+        // Por ID (el cajero suele teclear el código)
+        for (Integer id : ids.subMap(q, true, q + Character.MAX_VALUE, true).values()) {
+            rangos.put(id, q.equals(String.valueOf(id)) ? RANGO_ID_EXACTO : RANGO_ID_PREFIJO);
+        }
+
+        // Por palabras: intersección de los prefijos de cada palabra
+        Set<Integer> candidatos = null;
+        for (String palabra : palabrasDe(q)) {
+            if (palabra.isEmpty()) {
+                continue;
+            }
+            Set<Integer> conPrefijo = new HashSet<>();
+            for (Set<Integer> conPalabra : palabras.subMap(palabra, true, palabra + Character.MAX_VALUE, true)
+                    .values()) {
+                conPrefijo.addAll(conPalabra);
+            }
+            if (candidatos == null) {
+                candidatos = conPrefijo;
+            } else {
+                candidatos.retainAll(conPrefijo);
+            }
+            if (candidatos.isEmpty()) {
+                break;
+            }
+        }
+        if (candidatos != null) {
+            for (Integer id : candidatos) {
+                int rango = nombres.get(id).startsWith(q) ? RANGO_NOMBRE_PREFIJO : RANGO_PALABRA;
+                rangos.merge(id, rango, Math::min);
+            }
+        }
+
+        return ordenar(rangos, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Búsqueda tolerante a errores de tipeo ("tomte" -> "Tomate"). Cada palabra
+     * de la consulta debe coincidir por prefijo o estar a poca distancia de
+     * edición de una palabra del nombre; el puntaje es la suma de distancias.
+     * Devuelve como máximo 'limite' IDs, los más parecidos primero, y deja de
+     * buscar candidatos al agotar el presupuesto de tiempo.
+     */
+    List<Integer> buscarAproximado(String consulta, int limite, long presupuestoNanos) {
+        long plazo = System.nanoTime() + presupuestoNanos;
+        Map<Integer, Integer> puntajes = null;
+        for (String palabra : palabrasDe(normalizar(consulta))) {
+            if (palabra.isEmpty()) {
+                continue;
+            }
+            Map<Integer, Integer> deEsta = new HashMap<>();
+            for (Set<Integer> conPalabra : palabras.subMap(palabra, true, palabra + Character.MAX_VALUE, true)
+                    .values()) {
+                for (Integer id : conPalabra) {
+                    deEsta.put(id, 0);
+                }
+            }
+            for (IndiceTrigramas.Similar similar : trigramas.similares(palabra, plazo)) {
+                for (Integer id : palabras.get(similar.palabra())) {
+                    deEsta.merge(id, similar.distancia(), Math::min);
+                }
+            }
+
+            if (puntajes == null) {
+                puntajes = deEsta;
+            } else {
+                puntajes.keySet().retainAll(deEsta.keySet());
+                puntajes.replaceAll((id, total) -> total + deEsta.get(id));
+            }
+            if (puntajes.isEmpty()) {
+                break;
+            }
+        }
+        return puntajes == null ? List.of() : ordenar(puntajes, limite);
+    }
+
+    /** Ordena por rango (menor primero) y luego alfabéticamente. */
+    private List<Integer> ordenar(Map<Integer, Integer> rangos, int limite) {
+        // Clave = rango en los 32 bits altos y posición alfabética en los bajos
+        if (posicion == null) {
+            ordenarNombres();
+        }
+        long[] claves = new long[rangos.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> e : rangos.entrySet()) {
+            claves[i++] = ((long) e.getValue() << 32) | posicion.get(e.getKey());
+        }
+        Arrays.sort(claves);
+        int n = Math.min(claves.length, limite);
+        List<Integer> resultado = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            resultado.add(idEnPosicion[(int) claves[k]]);
+        }
+        return resultado;
+    }
+
+    private void ordenarNombres() {
+        Integer[] orden = nombres.keySet().toArray(new Integer[0]);
+        Arrays.sort(orden, (a, b) -> {
+            int c = nombres.get(a).compareTo(nombres.get(b));
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        posicion = new HashMap<>(orden.length * 2);
+        idEnPosicion = new int[orden.length];
+        for (int i = 0; i < orden.length; i++) {
+            posicion.put(orden[i], i);
+            idEnPosicion[i] = orden[i];
+        }
+    }
+}
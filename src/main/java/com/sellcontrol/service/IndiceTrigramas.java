@@ -0,0 +1,125 @@
+package com.sellcontrol.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Índice de trigramas sobre las palabras (ya normalizadas) del catálogo, para
+ * encontrar palabras parecidas a una mal escrita: "tomte" -> "tomate",
+ * "papya" -> "papaya".
+ *
+ * Los trigramas solo preseleccionan candidatos; la distancia de edición
+ * (Levenshtein, con tope) decide cuáles sirven. No es thread-safe: lo
+ * protege CatalogoProductos a través de IndiceProductos.
+ */
+class IndiceTrigramas {
+
+    /** Palabras similares examinadas como máximo por palabra consultada. */
+    private static final int MAX_CANDIDATOS = 400;
+
+    /** Palabra parecida y su distancia de edición a la consultada. */
+    record Similar(String palabra, int distancia) {
+    }
+
+    private final Map<String, Set<String>> palabrasPorTrigrama = new HashMap<>();
+
+    void agregar(String palabra) {
+        for (String t : trigramas(palabra)) {
+            palabrasPorTrigrama.computeIfAbsent(t, k -> new HashSet<>()).add(palabra);
+        }
+    }
+
+    void quitar(String palabra) {
+        for (String t : trigramas(palabra)) {
+            Set<String> conTrigrama = palabrasPorTrigrama.get(t);
+            if (conTrigrama != null && conTrigrama.remove(palabra) && conTrigrama.isEmpty()) {
+                palabrasPorTrigrama.remove(t);
+            }
+        }
+    }
+
+    void limpiar() {
+        palabrasPorTrigrama.clear();
+    }
+
+    /**
+     * Palabras indexadas a distancia de edición tolerada de la consulta: 1 para
+     * palabras de hasta 4 letras, 2 para las más largas. Se revisan primero
+     * las que comparten más trigramas y se corta al pasar el plazo (nanoTime).
+     */
+    List<Similar> similares(String consulta, long plazo) {
+        int maxDistancia = consulta.length() <= 4 ? 1 : 2;
+
+        Map<String, Integer> compartidos = new HashMap<>();
+        for (String t : trigramas(consulta)) {
+            Set<String> conTrigrama = palabrasPorTrigrama.get(t);
+            if (conTrigrama != null) {
+                for (String palabra : conTrigrama) {
+                    compartidos.merge(palabra, 1, Integer::sum);
+                }
+            }
+        }
+
+        List<Map.Entry<String, Integer>> candidatos = new ArrayList<>(compartidos.entrySet());
+        candidatos.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+
+        List<Similar> resultado = new ArrayList<>();
+        int revisados = 0;
+        for (Map.Entry<String, Integer> c : candidatos) {
+            if (++revisados > MAX_CANDIDATOS || System.nanoTime() > plazo) {
+                break;
+            }
+            String palabra = c.getKey();
+            if (Math.abs(palabra.length() - consulta.length()) > maxDistancia) {
+                continue;
+            }
+            int d = distancia(consulta, palabra, maxDistancia);
+            if (d <= maxDistancia) {
+                resultado.add(new Similar(palabra, d));
+            }
+        }
+        return resultado;
+    }
+
+    /** Trigramas con relleno: "papa" -> "  p", " pa", "pap", "apa", "pa ". */
+    private static Set<String> trigramas(String palabra) {
+        String s = "  " + palabra + " ";
+        Set<String> t = new HashSet<>();
+        for (int i = 0; i + 3 <= s.length(); i++) {
+            t.add(s.substring(i, i + 3));
+        }
+        return t;
+    }
+
+    /**
+     * Distancia de Levenshtein; si supera max devuelve max + 1 sin terminar
+     * de calcular.
+     */
+    static int distancia(String a, String b, int max) {
+        int[] previa = new int[b.length() + 1];
+        int[] actual = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previa[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            actual[0] = i;
+            int minFila = actual[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int costo = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                actual[j] = Math.min(Math.min(actual[j - 1] + 1, previa[j] + 1), previa[j - 1] + costo);
+                minFila = Math.min(minFila, actual[j]);
+            }
+            if (minFila > max) {
+                return max + 1;
+            }
+            int[] tmp = previa;
+            previa = actual;
+            actual = tmp;
+        }
+        return previa[b.length()];
+    }
+}
@@ -0,0 +1,171 @@
+package com.sellcontrol.service;
+
+import com.sellcontrol.config.AppPaths;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Logo del negocio para el encabezado del ticket, como imagen de 1 bit en
+ * formato raster ESC/POS (GS v 0) de 384 puntos de ancho (58mm).
+ *
+ * Escalar y tramar (Floyd-Steinberg) la imagen es costoso, así que se hace
+ * una sola vez: el resultado se guarda en AppPaths.getCacheDir() con el hash
+ * de la imagen y el ancho en el nombre, y PlantillaTicket lo incluye en el
+ * encabezado ya compilado. Cambiar la imagen cambia el hash y genera otro.
+ */
+final class LogoTicket {
+
+    static final int ANCHO_PUNTOS = 384;
+    /** Alto máximo en puntos, para que un logo vertical no gaste papel. */
+    private static final int ALTO_MAXIMO = 192;
+    private static final String ICONO = "/com/sellcontrol/icon.png";
+
+    private LogoTicket() {
+    }
+
+    /**
+     * Raster del logo configurado, listo para enviar, o un arreglo vacío si no
+     * se imprime logo o la imagen no se pudo leer.
+     */
+    static byte[] raster(TicketConfigService config) {
+        if (!config.isImprimirLogo()) {
+            return new byte[0];
+        }
+        try {
+            byte[] imagen = leerImagen(config.getLogoPath());
+            String clave = HexFormat.of().formatHex(sha256(imagen), 0, 8);
+            Path cache = AppPaths.getCacheDir().resolve("logo-" + clave + "-" + ANCHO_PUNTOS + ".escpos");
+            if (Files.exists(cache)) {
+                return Files.readAllBytes(cache);
+            }
+            byte[] raster = convertir(imagen);
+            guardar(cache, raster);
+            System.out.println("[LogoTicket] Logo convertido y guardado en " + cache.getFileName());
+            return raster;
+        } catch (IOException e) {
+            System.err.println("[LogoTicket] Error al preparar el logo, se imprime sin logo: " + e.getMessage());
+            return new byte[0];
+        }
+    }
+
+    /** Imagen configurada, o el ícono de la aplicación si no hay ruta. */
+    private static byte[] leerImagen(String ruta) throws IOException {
+        if (ruta == null || ruta.isBlank()) {
+            try (InputStream in = LogoTicket.class.getResourceAsStream(ICONO)) {
+                if (in == null) {
+                    throw new IOException("no se encontró " + ICONO);
+                }
+                return in.readAllBytes();
+            }
+        }
+        return Files.readAllBytes(Path.of(ruta));
+    }
+
+    /**
+     * Escala la imagen para que entre en 384 x 192 puntos, la centra sobre
+     * fondo blanco, la trama a blanco y negro y la codifica como GS v 0.
+     */
+    static byte[] convertir(byte[] imagen) throws IOException {
+        BufferedImage original = ImageIO.read(new ByteArrayInputStream(imagen));
+        if (original == null) {
+            throw new IOException("formato de imagen no soportado");
+        }
+
+        double escala = Math.min((double) ANCHO_PUNTOS / original.getWidth(),
+                (double) ALTO_MAXIMO / original.getHeight());
+        int ancho = Math.max(1, (int) Math.round(original.getWidth() * escala));
+        int alto = Math.max(1, (int) Math.round(original.getHeight() * escala));
+
+        BufferedImage lienzo = new BufferedImage(ANCHO_PUNTOS, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = lienzo.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, ANCHO_PUNTOS, alto);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(original, (ANCHO_PUNTOS - ancho) / 2, 0, ancho, alto, null);
+        } finally {
+            g.dispose();
+        }
+
+        // Luminancia de cada punto (0 = negro, 255 = blanco)
+        float[] gris = new float[ANCHO_PUNTOS * alto];
+        for (int y = 0; y < alto; y++) {
+            for (int x = 0; x < ANCHO_PUNTOS; x++) {
+                int rgb = lienzo.getRGB(x, y);
+                gris[y * ANCHO_PUNTOS + x] = 0.299f * ((rgb >> 16) & 0xFF) + 0.587f * ((rgb >> 8) & 0xFF)
+                        + 0.114f * (rgb & 0xFF);
+            }
+        }
+
+        // GS v 0: 1D 76 30 m xL xH yL yH, luego las filas (1 bit por punto, 1 = negro)
+        int bytesPorFila = ANCHO_PUNTOS / 8;
+        byte[] salida = new byte[8 + bytesPorFila * alto];
+        salida[0] = 0x1D;
+        salida[1] = 0x76;
+        salida[2] = 0x30;
+        salida[3] = 0x00; // tamaño normal
+        salida[4] = (byte) (bytesPorFila & 0xFF);
+        salida[5] = (byte) (bytesPorFila >> 8);
+        salida[6] = (byte) (alto & 0xFF);
+        salida[7] = (byte) (alto >> 8);
+
+        // Floyd-Steinberg: el error de cada punto se reparte entre los vecinos
+        for (int y = 0; y < alto; y++) {
+            for (int x = 0; x < ANCHO_PUNTOS; x++) {
+                int i = y * ANCHO_PUNTOS + x;
+                boolean negro = gris[i] < 128;
+                float error = gris[i] - (negro ? 0 : 255);
+                if (negro) {
+                    salida[8 + y * bytesPorFila + x / 8] |= (byte) (0x80 >> (x % 8));
+                }
+                if (x + 1 < ANCHO_PUNTOS) {
+                    gris[i + 1] += error * 7 / 16;
+                }
+                if (y + 1 < alto) {
+                    if (x > 0) {
+                        gris[i + ANCHO_PUNTOS - 1] += error * 3 / 16;
+                    }
+                    gris[i + ANCHO_PUNTOS] += error * 5 / 16;
+                    if (x + 1 < ANCHO_PUNTOS) {
+                        gris[i + ANCHO_PUNTOS + 1] += error / 16;
+                    }
+                }
+            }
+        }
+        return salida;
+    }
+
+    private static void guardar(Path destino, byte[] datos) throws IOException {
+        Files.createDirectories(destino.getParent());
+        Path tmp = destino.resolveSibling(destino.getFileName() + ".tmp");
+        Files.write(tmp, datos);
+        try {
+            Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static byte[] sha256(byte[] datos) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(datos);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.sellcontrol.service;
+
+import javax.print.PrintService;
+import javax.print.PrintServiceLookup;
+import javax.print.attribute.standard.PrinterIsAcceptingJobs;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Caché de la impresora de tickets y su estado.
+ * Enumerar las impresoras del sistema (PrintServiceLookup) tarda cientos de
+ * milisegundos en CUPS, así que se hace en un hilo de fondo cada minuto y
+ * después de un fallo de impresión; imprimir usa el PrintService ya resuelto.
+ * Si se imprime directo a un dispositivo (printer_device) solo se verifica
+ * que el dispositivo exista y se pueda escribir.
+ */
+public final class MonitorImpresora {
+
+    public enum Estado {
+        DESCONOCIDO, EN_LINEA, FUERA_DE_LINEA
+    }
+
+    /** Estado de la impresora en la última verificación o impresión. */
+    public record EstadoImpresora(Estado estado, String nombre, String ultimoError, LocalDateTime verificado) {
+
+        /** Texto corto para mostrar en pantalla. */
+        public String descripcion() {
+            return switch (estado) {
+                case EN_LINEA -> "🖨 " + nombre + ": en línea";
+                case FUERA_DE_LINEA -> "🖨 " + nombre + ": fuera de línea"
+                        + (ultimoError != null ? " (" + ultimoError + ")" : "");
+                default -> "🖨 " + nombre + ": verificando...";
+            };
+        }
+    }
+
+    private static final long INTERVALO_SEGUNDOS = 60;
+
+    private static final MonitorImpresora INSTANCE = new MonitorImpresora();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "printer-monitor");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicReference<EstadoImpresora> estado;
+    private volatile PrintService servicio;
+    private volatile String nombreResuelto;
+    private boolean iniciado;
+
+    private MonitorImpresora() {
+        TicketConfigService config = TicketConfigService.actual();
+        estado = new AtomicReference<>(new EstadoImpresora(Estado.DESCONOCIDO,
+                config.getPrinterDevice().isEmpty() ? config.getPrinterName() : config.getPrinterDevice(), null, null));
+    }
+
+    public static MonitorImpresora getInstance() {
+        return INSTANCE;
+    }
+
+    /** Programa la verificación periódica (la primera, de inmediato). */
+    public synchronized void iniciar() {
+        if (iniciado) {
+            return;
+        }
+        iniciado = true;
+        scheduler.scheduleWithFixedDelay(this::refrescarConfigurada, 0, INTERVALO_SEGUNDOS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * PrintService para el nombre configurado, sin enumerar impresoras si ya se
+     * resolvió antes. Si la última verificación no la encontró devuelve null
+     * de inmediato y pide una nueva verificación en segundo plano.
+     */
+    public PrintService obtener(String nombre) {
+        iniciar();
+        if (!nombre.equalsIgnoreCase(nombreResuelto)) {
+            // Primera vez o cambió el nombre en la configuración
+            return refrescar(nombre);
+        }
+        PrintService ps = servicio;
+        if (ps == null) {
+            refrescarEnFondo();
+        }
+        return ps;
+    }
+
+    /** La última impresión salió bien. */
+    public void reportarExito(String nombre) {
+        estado.set(new EstadoImpresora(Estado.EN_LINEA, nombre, null, LocalDateTime.now()));
+    }
+
+    /** Falló una impresión: se marca fuera de línea y se vuelve a buscar la impresora. */
+    public void reportarFallo(String nombre, String error) {
+        estado.set(new EstadoImpresora(Estado.FUERA_DE_LINEA, nombre, error, LocalDateTime.now()));
+        servicio = null;
+        refrescarEnFondo();
+    }
+
+    public EstadoImpresora getEstado() {
+        return estado.get();
+    }
+
+    private void refrescarEnFondo() {
+        scheduler.execute(this::refrescarConfigurada);
+    }
+
+    /** Verifica la impresora o el dispositivo de la configuración vigente. */
+    private void refrescarConfigurada() {
+        TicketConfigService config = TicketConfigService.actual();
+        if (config.getPrinterDevice().isEmpty()) {
+            refrescar(config.getPrinterName());
+        } else {
+            verificarDispositivo(config.getPrinterDevice());
+        }
+    }
+
+    private void verificarDispositivo(String ruta) {
+        Path dispositivo = Path.of(ruta);
+        if (Files.isWritable(dispositivo)) {
+            estado.set(new EstadoImpresora(Estado.EN_LINEA, ruta, null, LocalDateTime.now()));
+        } else {
+            estado.set(new EstadoImpresora(Estado.FUERA_DE_LINEA, ruta,
+                    Files.exists(dispositivo) ? "sin permiso de escritura" : "no conectada", LocalDateTime.now()));
+        }
+    }
+
+    /**
+     * Enumera las impresoras del sistema y actualiza la caché y el estado.
+     * En Windows usa el nombre del driver (ej: "HOP-H58").
+     * En Linux/CUPS usa el nombre configurado en CUPS.
+     */
+    private synchronized PrintService refrescar(String nombre) {
+        PrintService encontrada = null;
+        PrintService[] services = PrintServiceLookup.lookupPrintServices(null, null);
+        for (PrintService ps : services) {
+            if (ps.getName().toLowerCase().contains(nombre.toLowerCase())) {
+                encontrada = ps;
+                break;
+            }
+        }
+
+        EstadoImpresora anterior = estado.get();
+        EstadoImpresora nuevo;
+        if (encontrada == null) {
+            nuevo = new EstadoImpresora(Estado.FUERA_DE_LINEA, nombre, "no encontrada", LocalDateTime.now());
+            if (anterior.estado() != Estado.FUERA_DE_LINEA) {
+                // Log todas las impresoras disponibles para debug
+                System.err.println("[Impresora] '" + nombre + "' no encontrada. Disponibles:");
+                for (PrintService ps : services) {
+                    System.err.println("  - " + ps.getName());
+                }
+            }
+        } else if (encontrada.getAttribute(PrinterIsAcceptingJobs.class) == PrinterIsAcceptingJobs.NOT_ACCEPTING_JOBS) {
+            nuevo = new EstadoImpresora(Estado.FUERA_DE_LINEA, nombre, "no acepta trabajos", LocalDateTime.now());
+        } else {
+            nuevo = new EstadoImpresora(Estado.EN_LINEA, nombre, null, LocalDateTime.now());
+            if (anterior.estado() != Estado.EN_LINEA) {
+                System.out.println("[Impresora] Impresora encontrada: " + encontrada.getName());
+            }
+        }
+
+        servicio = encontrada;
+        nombreResuelto = nombre;
+        estado.set(nuevo);
+        return encontrada;
+    }
+}
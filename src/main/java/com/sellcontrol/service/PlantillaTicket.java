@@ -0,0 +1,370 @@
+package com.sellcontrol.service;
+
+import com.sellcontrol.model.DetalleVenta;
+import com.sellcontrol.model.Venta;
+
+import java.nio.charset.Charset;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Ticket ESC/POS "compilado" para una configuración.
+ * El encabezado (logo, nombre del negocio, subtítulo, dirección, teléfono,
+ * cédula, datos opcionales) y el pie solo dependen de la configuración, así
+ * que se codifican una vez en CP437 y se copian tal cual en cada venta. Los datos de
+ * la venta y las líneas de detalle se escriben en un buffer reutilizable, con
+ * el formato de números hecho a mano en lugar de String.format.
+ *
+ * La plantilla se regenera cuando cambia la configuración vigente
+ * (TicketConfigService.actual() devuelve otra instancia), en segundo plano:
+ * ver precompilar.
+ */
+final class PlantillaTicket {
+
+    static final int LINE_WIDTH = 32; // caracteres útiles en 58mm
+    static final Charset CHARSET = Charset.forName("CP437");
+
+    // Comandos ESC/POS
+    private static final byte[] ESC_INIT = { 0x1B, 0x40 }; // Inicializar impresora
+    private static final byte[] ESC_CENTER = { 0x1B, 0x61, 0x01 }; // Alinear al centro
+    private static final byte[] ESC_LEFT = { 0x1B, 0x61, 0x00 }; // Alinear a la izquierda
+    private static final byte[] ESC_BOLD_ON = { 0x1B, 0x45, 0x01 }; // Negrita ON
+    private static final byte[] ESC_BOLD_OFF = { 0x1B, 0x45, 0x00 }; // Negrita OFF
+    private static final byte[] ESC_DOUBLE_HEIGHT = { 0x1B, 0x21, 0x10 }; // Doble altura
+    private static final byte[] ESC_NORMAL_SIZE = { 0x1B, 0x21, 0x00 }; // Tamaño normal
+    private static final byte[] ESC_CUT = { 0x1D, 0x56, 0x00 }; // Corte de papel
+    private static final byte[] ESC_FEED_3 = { 0x1B, 0x64, 0x03 }; // Avanzar 3 líneas
+    private static final byte LF = 0x0A; // Salto de línea
+
+    /** Byte CP437 de cada carácter Latin-1 ('?' si no existe en CP437). */
+    private static final byte[] CP437_LATIN1 = new byte[256];
+
+    static {
+        for (int c = 0; c < 256; c++) {
+            CP437_LATIN1[c] = String.valueOf((char) c).getBytes(CHARSET)[0];
+        }
+    }
+
+    // Fragmentos fijos, ya codificados
+    private static final byte[] LINEA_IGUAL = bytes("=".repeat(LINE_WIDTH) + "\n");
+    private static final byte[] LINEA_GUION = bytes("-".repeat(LINE_WIDTH) + "\n");
+    private static final byte[] ETQ_FECHA = bytes("Fecha  : ");
+    private static final byte[] ETQ_CAJERO = bytes("Cajero : ");
+    private static final byte[] ETQ_PAGO = bytes("Pago   : ");
+    private static final byte[] ETQ_FIADO = bytes("Estado : FIADO (PENDIENTE)\n");
+    private static final byte[] ETQ_CLIENTE = bytes("Cliente: ");
+    private static final byte[] ETQ_TOTAL = bytes("TOTAL: ¢");
+    private static final byte[] ETQ_EFECTIVO = bytes("Efectivo: ¢");
+    private static final byte[] ETQ_CAMBIO = bytes("Cambio  : ¢");
+    private static final byte[] ETQ_PROD = bytes("Prod #");
+    private static final byte[] ENCABEZADO_DETALLE = bytes(String.format("%-16s %6s %8s\n", "Producto", "Cant", "Subt."));
+
+    private static volatile PlantillaTicket vigente;
+
+    private final TicketConfigService config;
+    private final byte[] encabezado;
+    private final byte[] pie;
+    /** Separador decimal de String.format("%.1f") en el locale por defecto. */
+    private final char separadorDecimal;
+    private final Salida salida = new Salida();
+
+    private PlantillaTicket(TicketConfigService config) {
+        this.config = config;
+        this.separadorDecimal = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT))
+                .getDecimalSeparator();
+
+        Salida s = new Salida();
+        s.escribir(ESC_INIT);
+
+        // === Encabezado centrado, con el logo si está configurado ===
+        s.escribir(ESC_CENTER);
+        s.escribir(LogoTicket.raster(config));
+        s.escribir(ESC_DOUBLE_HEIGHT);
+        s.escribir(ESC_BOLD_ON);
+        s.linea(config.getNombreNegocio());
+        s.escribir(ESC_NORMAL_SIZE);
+        s.escribir(ESC_BOLD_OFF);
+        s.linea(config.getSubtitulo());
+        lineaOpcional(s, config.getDireccion());
+        lineaOpcional(s, config.getTelefono());
+        lineaOpcional(s, config.getCedula());
+        s.escribir(LINEA_IGUAL);
+        s.escribir(ESC_LEFT);
+
+        // === Datos opcionales ===
+        lineaOpcional(s, config.getDatoOpcional1());
+        lineaOpcional(s, config.getDatoOpcional2());
+        this.encabezado = s.toByteArray();
+
+        // === Pie ===
+        s.reiniciar();
+        s.escribir(ESC_CENTER);
+        s.escribir(LF);
+        lineaOpcional(s, config.getPie());
+        s.escribir(LF);
+
+        // Avanzar y cortar
+        s.escribir(ESC_FEED_3);
+        s.escribir(ESC_CUT);
+        this.pie = s.toByteArray();
+    }
+
+    /**
+     * Plantilla de la configuración dada; se reutiliza mientras no cambie.
+     * Normalmente ya está compilada (ver precompilar); solo se compila aquí si
+     * se imprime antes de que termine esa compilación en segundo plano.
+     */
+    static PlantillaTicket de(TicketConfigService config) {
+        PlantillaTicket p = vigente;
+        if (p == null || p.config != config) {
+            p = new PlantillaTicket(config);
+            vigente = p;
+        }
+        return p;
+    }
+
+    /**
+     * Compila la plantilla de la configuración (con el logo, lo costoso) y la
+     * deja como vigente. TicketConfigService la llama fuera del hilo de
+     * JavaFX cada vez que carga o recarga la configuración.
+     */
+    static void precompilar(TicketConfigService config) {
+        PlantillaTicket p = vigente;
+        if (p != null && p.config == config) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        vigente = new PlantillaTicket(config);
+        System.out.println("[Ticket] Plantilla compilada en " + (System.nanoTime() - inicio) / 1_000_000 + " ms.");
+    }
+
+    /**
+     * Genera el ticket completo como array de bytes ESC/POS, con monto pagado y
+     * cambio (montoPagado 0 = no mostrar).
+     */
+    synchronized byte[] generar(Venta venta, List<DetalleVenta> detalles, String cajero, double montoPagado,
+            double cambio) {
+        Salida out = salida;
+        out.reiniciar();
+        out.escribir(encabezado);
+
+        // === Datos de la venta ===
+        out.escribir(ETQ_FECHA);
+        out.linea(venta.getFechaHora());
+        out.escribir(ETQ_CAJERO);
+        out.truncado(cajero, 22);
+        out.escribir(LF);
+        out.escribir(ETQ_PAGO);
+        out.linea(venta.getMetodoPago());
+
+        if ("PENDIENTE".equals(venta.getEstado())) {
+            out.escribir(ESC_BOLD_ON);
+            out.escribir(ETQ_FIADO);
+            out.escribir(ESC_BOLD_OFF);
+            if (venta.getClienteNombre() != null && !venta.getClienteNombre().isBlank()) {
+                out.escribir(ETQ_CLIENTE);
+                out.truncado(venta.getClienteNombre(), 22);
+                out.escribir(LF);
+            }
+        }
+
+        // === Líneas de detalle ===
+        // Formato: [Producto(16)] [Cant(6)] [Subt(8)]
+        out.escribir(LINEA_GUION);
+        out.escribir(ESC_BOLD_ON);
+        out.escribir(ENCABEZADO_DETALLE);
+        out.escribir(ESC_BOLD_OFF);
+        out.escribir(LINEA_GUION);
+
+        for (DetalleVenta dv : detalles) {
+            int inicio = out.largo;
+            String nombre = dv.getNombreProducto();
+            if (nombre != null) {
+                out.truncado(nombre, 16);
+            } else {
+                out.escribir(ETQ_PROD);
+                out.entero(dv.getProductoId());
+            }
+            out.rellenarHasta(inicio + 16);
+            out.escribir((byte) ' ');
+
+            inicio = out.largo;
+            out.decimal(dv.getCantidad(), 1, separadorDecimal);
+            if (dv.getTipoUnidad() != null) {
+                if ("KG".equals(dv.getTipoUnidad())) {
+                    out.escribir((byte) 'k');
+                    out.escribir((byte) 'g');
+                } else {
+                    out.escribir((byte) 'u');
+                }
+            }
+            out.alinearDerecha(inicio, 6);
+            out.escribir((byte) ' ');
+
+            inicio = out.largo;
+            out.decimal(dv.getSubtotal(), 0, separadorDecimal);
+            out.alinearDerecha(inicio, 8);
+            out.escribir(LF);
+        }
+
+        // === Total ===
+        out.escribir(LINEA_IGUAL);
+        out.escribir(ESC_BOLD_ON);
+        out.escribir(ESC_DOUBLE_HEIGHT);
+        out.escribir(ETQ_TOTAL);
+        out.decimal(venta.getTotal(), 0, separadorDecimal);
+        out.escribir(LF);
+        out.escribir(ESC_NORMAL_SIZE);
+        out.escribir(ESC_BOLD_OFF);
+        out.escribir(LINEA_IGUAL);
+
+        // === Pago en efectivo (si aplica) ===
+        if (montoPagado > 0) {
+            out.escribir(ESC_LEFT);
+            out.escribir(ETQ_EFECTIVO);
+            out.decimal(montoPagado, 0, separadorDecimal);
+            out.escribir(LF);
+            out.escribir(ESC_BOLD_ON);
+            out.escribir(ETQ_CAMBIO);
+            out.decimal(cambio, 0, separadorDecimal);
+            out.escribir(LF);
+            out.escribir(ESC_BOLD_OFF);
+            out.escribir(LINEA_GUION);
+        }
+
+        out.escribir(pie);
+        return out.toByteArray();
+    }
+
+    private static void lineaOpcional(Salida s, String texto) {
+        if (texto != null && !texto.isBlank()) {
+            s.linea(texto);
+        }
+    }
+
+    private static byte[] bytes(String texto) {
+        return texto.getBytes(CHARSET);
+    }
+
+    /** Buffer de bytes que crece según haga falta y se reutiliza entre tickets. */
+    private static final class Salida {
+
+        private byte[] buf = new byte[1024];
+        private int largo;
+
+        void reiniciar() {
+            largo = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, largo);
+        }
+
+        void escribir(byte b) {
+            asegurar(1);
+            buf[largo++] = b;
+        }
+
+        void escribir(byte[] b) {
+            asegurar(b.length);
+            System.arraycopy(b, 0, buf, largo, b.length);
+            largo += b.length;
+        }
+
+        /** Texto y salto de línea ("null" si es null, como la concatenación). */
+        void linea(String texto) {
+            texto(texto != null ? texto : "null", 0, texto != null ? texto.length() : 4);
+            escribir(LF);
+        }
+
+        /** Texto cortado a max caracteres, terminando en "." si se cortó. */
+        void truncado(String texto, int max) {
+            if (texto == null) {
+                return;
+            }
+            if (texto.length() <= max) {
+                texto(texto, 0, texto.length());
+            } else {
+                texto(texto, 0, max - 1);
+                escribir((byte) '.');
+            }
+        }
+
+        /** Codifica en CP437 los caracteres [desde, hasta) del texto. */
+        void texto(String texto, int desde, int hasta) {
+            asegurar(hasta - desde);
+            for (int i = desde; i < hasta; i++) {
+                char c = texto.charAt(i);
+                if (c < 256) {
+                    buf[largo++] = CP437_LATIN1[c];
+                } else if (Character.isHighSurrogate(c) && i + 1 < hasta
+                        && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                    buf[largo++] = '?'; // un par sustituto es un solo carácter
+                    i++;
+                } else {
+                    buf[largo++] = String.valueOf(c).getBytes(CHARSET)[0];
+                }
+            }
+        }
+
+        void entero(long n) {
+            if (n < 0) {
+                escribir((byte) '-');
+                n = -n;
+            }
+            int inicio = largo;
+            do {
+                escribir((byte) ('0' + n % 10));
+                n /= 10;
+            } while (n > 0);
+            // Los dígitos quedaron al revés
+            for (int i = inicio, j = largo - 1; i < j; i++, j--) {
+                byte t = buf[i];
+                buf[i] = buf[j];
+                buf[j] = t;
+            }
+        }
+
+        /** Número con decimales fijos, redondeado al más cercano (sin separador de miles). */
+        void decimal(double valor, int decimales, char separador) {
+            long escala = decimales == 0 ? 1 : 10;
+            long redondeado = Math.round(Math.abs(valor) * escala);
+            if (valor < 0) {
+                escribir((byte) '-');
+            }
+            entero(redondeado / escala);
+            if (decimales > 0) {
+                escribir(CP437_LATIN1[separador & 0xFF]);
+                entero(redondeado % escala);
+            }
+        }
+
+        /** Completa con espacios hasta la posición dada. */
+        void rellenarHasta(int fin) {
+            while (largo < fin) {
+                escribir((byte) ' ');
+            }
+        }
+
+        /** Mueve lo escrito desde 'inicio' a la derecha de un campo de 'ancho' bytes. */
+        void alinearDerecha(int inicio, int ancho) {
+            int escrito = largo - inicio;
+            int relleno = ancho - escrito;
+            if (relleno <= 0) {
+                return;
+            }
+            asegurar(relleno);
+            System.arraycopy(buf, inicio, buf, inicio + relleno, escrito);
+            Arrays.fill(buf, inicio, inicio + relleno, (byte) ' ');
+            largo += relleno;
+        }
+
+        private void asegurar(int extra) {
+            if (largo + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, largo + extra));
+            }
+        }
+    }
+}
@@ -2,50 +2,129 @@ package com.sellcontrol.service;
 
 import com.sellcontrol.dao.AuditLogDAO;
 import com.sellcontrol.dao.ProductoDAO;
+import com.sellcontrol.db.DbExecutor;
 import com.sellcontrol.model.AuditLog;
+import com.sellcontrol.model.BusquedaProductos;
 import com.sellcontrol.model.Producto;
 import com.sellcontrol.model.Usuario;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Servicio de gestión de productos.
  * Contiene la lógica de negocio para CRUD de productos.
+ * Las lecturas se sirven desde el catálogo en memoria (CatalogoProductos),
+ * que este servicio actualiza después de cada escritura.
  */
 public class ProductoService {
 
+    /** Máximo de sugerencias de la búsqueda tolerante a errores. */
+    private static final int MAX_SUGERENCIAS = 10;
+    /** Tiempo máximo buscando sugerencias, para no trabar el tipeo en caja. */
+    private static final long PRESUPUESTO_SUGERENCIAS_NANOS = 5_000_000;
+
     private final ProductoDAO productoDAO = new ProductoDAO();
     private final AuditLogDAO auditLogDAO = new AuditLogDAO();
+    private final CatalogoProductos catalogo = CatalogoProductos.getInstance();
+
+    /**
+     * Carga el catálogo en memoria en el hilo de base de datos, para que la
+     * primera pantalla de ventas ya lo encuentre listo.
+     */
+    public CompletableFuture<Void> precargarCatalogo() {
+        return DbExecutor.submit(() -> {
+            catalogo();
+            return null;
+        });
+    }
+
+    /**
+     * Versión del catálogo; cambia con cada alta, edición o eliminación.
+     * Una pantalla que guardó la versión al cargar sabe que su lista está
+     * desactualizada si ya no coincide.
+     */
+    public long versionCatalogo() {
+        return catalogo.getVersion();
+    }
 
     /**
-     * Obtiene todos los productos.
+     * Obtiene todos los productos (desde el catálogo en memoria).
      */
     public List<Producto> listarTodos() {
-        return productoDAO.findAll();
+        return catalogo().todos();
+    }
+
+    /**
+     * Obtiene todos los productos en el hilo de base de datos.
+     */
+    public CompletableFuture<List<Producto>> listarTodosAsync() {
+        return DbExecutor.submit(this::listarTodos);
     }
 
     /**
      * Obtiene solo los productos activos.
      */
     public List<Producto> listarActivos() {
-        return productoDAO.findActivos();
+        return catalogo().activos();
+    }
+
+    /**
+     * Obtiene los productos activos en el hilo de base de datos.
+     */
+    public CompletableFuture<List<Producto>> listarActivosAsync() {
+        return DbExecutor.submit(this::listarActivos);
     }
 
     /**
-     * Busca productos por nombre (parcial).
+     * Busca productos por nombre o ID (prefijo de palabra, sin distinguir
+     * tildes ni mayúsculas), los más relevantes primero. Si no hay
+     * coincidencias devuelve sugerencias para errores de tipeo.
      */
     public List<Producto> buscarPorNombre(String nombre) {
         if (nombre == null || nombre.isBlank()) {
-            return productoDAO.findAll();
+            return listarTodos();
         }
-        return productoDAO.findByNombre(nombre.trim());
+        return buscarConRespaldo(nombre, false).productos();
+    }
+
+    /**
+     * Como buscarPorNombre, pero solo productos activos (búsqueda en caja).
+     */
+    public List<Producto> buscarActivos(String texto) {
+        return buscarActivosConSugerencias(texto).productos();
+    }
+
+    /**
+     * Como buscarActivos, pero indica si el resultado son sugerencias por
+     * parecido, para que la caja no elija sola un producto mal tipeado.
+     */
+    public BusquedaProductos buscarActivosConSugerencias(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return new BusquedaProductos(listarActivos(), false);
+        }
+        return buscarConRespaldo(texto, true);
+    }
+
+    /**
+     * Búsqueda por prefijo; si no encuentra nada prueba la búsqueda tolerante
+     * a errores de tipeo ("tomte" -> "Tomate").
+     */
+    private BusquedaProductos buscarConRespaldo(String texto, boolean soloActivos) {
+        CatalogoProductos c = catalogo();
+        List<Producto> exactos = c.buscar(texto, soloActivos);
+        if (!exactos.isEmpty()) {
+            return new BusquedaProductos(exactos, false);
+        }
+        return new BusquedaProductos(
+                c.buscarAproximado(texto, soloActivos, MAX_SUGERENCIAS, PRESUPUESTO_SUGERENCIAS_NANOS), true);
     }
 
     /**
      * Busca un producto por ID.
      */
     public Producto buscarPorId(int id) {
-        return productoDAO.findById(id);
+        return catalogo().get(id);
     }
 
     /**
@@ -88,6 +167,11 @@ public class ProductoService {
 
         int id = productoDAO.insert(p);
         if (id > 0) {
+            // Releer para traer creado_en, que lo pone SQLite
+            Producto creado = productoDAO.findById(id);
+            if (creado != null) {
+                catalogo().poner(creado);
+            }
             registrarAuditoria("CREAR_PRODUCTO", id);
             return null;
         }
@@ -119,10 +203,11 @@ public class ProductoService {
             return "El precio no es un número válido.";
         }
 
-        Producto p = productoDAO.findById(id);
-        if (p == null)
+        Producto actual = catalogo().get(id);
+        if (actual == null)
             return "Producto no encontrado.";
 
+        Producto p = copiar(actual);
         p.setNombre(nombre.trim());
         p.setTipo(tipo);
         p.setActivo(activo);
@@ -136,6 +221,7 @@ public class ProductoService {
         }
 
         if (productoDAO.update(p)) {
+            catalogo().poner(p);
             registrarAuditoria("EDITAR_PRODUCTO", id);
             return null;
         }
@@ -147,12 +233,14 @@ public class ProductoService {
      * Cambia el estado activo/inactivo de un producto.
      */
     public String toggleActivo(int id) {
-        Producto p = productoDAO.findById(id);
-        if (p == null)
+        Producto actual = catalogo().get(id);
+        if (actual == null)
             return "Producto no encontrado.";
 
+        Producto p = copiar(actual);
         p.setActivo(!p.isActivo());
         if (productoDAO.update(p)) {
+            catalogo().poner(p);
             registrarAuditoria(p.isActivo() ? "ACTIVAR_PRODUCTO" : "DESACTIVAR_PRODUCTO", id);
             return null;
         }
@@ -166,17 +254,28 @@ public class ProductoService {
      * @return mensaje de error o null si fue exitoso.
      */
     public String eliminar(int id) {
-        Producto p = productoDAO.findById(id);
-        if (p == null)
+        if (catalogo().get(id) == null)
             return "Producto no encontrado.";
 
         if (productoDAO.delete(id)) {
+            catalogo().quitar(id);
             registrarAuditoria("ELIMINAR_PRODUCTO", id);
             return null;
         }
         return "No se puede eliminar: el producto tiene ventas asociadas. Use Desactivar en su lugar.";
     }
 
+    private CatalogoProductos catalogo() {
+        catalogo.asegurarCargado(productoDAO::findAll);
+        return catalogo;
+    }
+
+    /** Los productos del catálogo no se modifican: se edita una copia. */
+    private static Producto copiar(Producto p) {
+        return new Producto(p.getId(), p.getNombre(), p.getTipo(), p.getPrecioPorKg(), p.getPrecioPorUnidad(),
+                p.isActivo(), p.getCreadoEn());
+    }
+
     private void registrarAuditoria(String accion, int entidadId) {
         Usuario current = AuthService.getCurrentUser();
         if (current != null) {
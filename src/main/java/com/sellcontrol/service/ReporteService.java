@@ -5,13 +5,17 @@ import com.sellcontrol.dao.MermaDAO;
 import com.sellcontrol.dao.VentaDAO;
 import com.sellcontrol.model.Gasto;
 import com.sellcontrol.model.Merma;
+import com.sellcontrol.model.ReportSnapshot;
 import com.sellcontrol.model.Venta;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Servicio de reportes.
  * Consultas agregadas para reportes diarios/semanales y ganancia real.
+ * Los totales de ventas (cobradas, por método de pago, ganancia) se obtienen
+ * con snapshot(), que los calcula todos con una sola pasada en SQLite.
  */
 public class ReporteService {
 
@@ -27,70 +31,52 @@ public class ReporteService {
     }
 
     /**
-     * Obtiene gastos por rango de fechas.
+     * Recorre las ventas del rango sin cargarlas en memoria (ver VentaDAO.forEachInRange).
      */
-    public List<Gasto> gastosPorRango(String desde, String hasta) {
-        return gastoDAO.findByRango(desde, hasta);
+    public boolean recorrerVentas(String desde, String hasta, Consumer<Venta> consumer) {
+        return ventaDAO.forEachInRange(desde, hasta, consumer);
     }
 
-    /**
-     * Obtiene mermas por rango de fechas.
-     */
-    public List<Merma> mermasPorRango(String desde, String hasta) {
-        return mermaDAO.findByRango(desde, hasta);
-    }
-
-    /**
-     * Calcula el total de ventas cobradas en un rango.
-     */
-    public double totalVentasCobradas(String desde, String hasta) {
-        return ventasPorRango(desde, hasta).stream()
-                .filter(v -> "COBRADA".equals(v.getEstado()))
-                .mapToDouble(Venta::getTotal)
-                .sum();
-    }
-
-    /**
-     * Calcula el total de gastos en un rango.
-     */
-    public double totalGastos(String desde, String hasta) {
-        return gastosPorRango(desde, hasta).stream()
-                .mapToDouble(Gasto::getMonto)
-                .sum();
+    public boolean recorrerGastos(String desde, String hasta, Consumer<Gasto> consumer) {
+        return gastoDAO.forEachInRange(desde, hasta, consumer);
     }
 
-    /**
-     * Calcula el total de merma en un rango.
-     */
-    public double totalMerma(String desde, String hasta) {
-        return mermasPorRango(desde, hasta).stream()
-                .mapToDouble(Merma::getMontoAproximado)
-                .sum();
-    }
-
-    /**
-     * Calcula la ganancia real: Ventas cobradas - Gastos - Merma.
-     */
-    public double gananciaReal(String desde, String hasta) {
-        return totalVentasCobradas(desde, hasta) - totalGastos(desde, hasta) - totalMerma(desde, hasta);
-    }
-
-    /**
-     * Total de ventas (todas) en un rango.
-     */
-    public double totalVentasTodas(String desde, String hasta) {
-        return ventasPorRango(desde, hasta).stream()
-                .mapToDouble(Venta::getTotal)
-                .sum();
+    public boolean recorrerMermas(String desde, String hasta, Consumer<Merma> consumer) {
+        return mermaDAO.forEachInRange(desde, hasta, consumer);
     }
 
     /**
-     * Total ventas por método de pago.
+     * Calcula todos los totales del rango de una vez: una consulta agrupada por
+     * estado y método de pago sobre ventas, más las sumas de gastos y merma.
+     *
+     * @return el resumen, o null si alguna consulta falló (para no mostrar un
+     *         reporte en cero como si fuera válido).
      */
-    public double totalPorMetodoPago(String desde, String hasta, String metodo) {
-        return ventasPorRango(desde, hasta).stream()
-                .filter(v -> metodo.equals(v.getMetodoPago()) && "COBRADA".equals(v.getEstado()))
-                .mapToDouble(Venta::getTotal)
-                .sum();
+    public ReportSnapshot snapshot(String desde, String hasta) {
+        int[] cantidad = new int[1];
+        double[] t = new double[5]; // todas, cobradas, efectivo, tarjeta, sinpe
+        boolean ok = ventaDAO.totalesPorEstadoYMetodo(desde, hasta, (estado, metodo, n, total) -> {
+            cantidad[0] += n;
+            t[0] += total;
+            if ("COBRADA".equals(estado)) {
+                t[1] += total;
+                switch (metodo) {
+                    case "EFECTIVO" -> t[2] += total;
+                    case "TARJETA" -> t[3] += total;
+                    case "SINPE" -> t[4] += total;
+                    default -> {
+                    }
+                }
+            }
+        });
+        if (!ok) {
+            return null;
+        }
+        double gastos = gastoDAO.sumByRango(desde, hasta);
+        double merma = mermaDAO.sumByRango(desde, hasta);
+        if (gastos < 0 || merma < 0) {
+            return null;
+        }
+        return new ReportSnapshot(desde, hasta, cantidad[0], t[0], t[1], t[2], t[3], t[4], gastos, merma);
     }
 }
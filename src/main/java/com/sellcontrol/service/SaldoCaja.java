@@ -0,0 +1,80 @@
+package com.sellcontrol.service;
+
+import com.sellcontrol.dao.SaldoCajaDAO;
+
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+/**
+ * Saldo esperado de la caja en memoria: el efectivo que debería haber en la
+ * gaveta hoy. Se carga una vez desde caja_saldo y después VentaService y
+ * CajaService lo mantienen al día con el saldo que cada operación dejó
+ * guardado en su propia transacción, así que consultarlo no toca la base.
+ *
+ * Solo se publica después del commit, y por versión: si dos operaciones
+ * terminan en distinto orden del que se guardaron, gana la última guardada.
+ * Al cambiar de día el saldo vuelve a cero hasta el primer movimiento.
+ */
+final class SaldoCaja {
+
+    private static final SaldoCaja INSTANCE = new SaldoCaja();
+
+    private SaldoCajaDAO.Saldo actual; // null = no cargado
+
+    private SaldoCaja() {
+    }
+
+    static SaldoCaja getInstance() {
+        return INSTANCE;
+    }
+
+    /** Efectivo que entra a la gaveta por una venta o un cobro. */
+    static double efectivo(String metodoPago, double total) {
+        return "EFECTIVO".equals(metodoPago) ? total : 0;
+    }
+
+    /** Efectivo que entra (INGRESO, CAMBIO) o sale (RETIRO) por un movimiento. */
+    static double movimiento(String tipo, double monto) {
+        return "RETIRO".equals(tipo) ? -monto : monto;
+    }
+
+    /**
+     * Carga el saldo con el lector dado si todavía no se cargó.
+     */
+    synchronized void asegurarCargado(Supplier<SaldoCajaDAO.Saldo> lector) {
+        if (actual != null) {
+            return;
+        }
+        SaldoCajaDAO.Saldo leido = lector.get();
+        if (leido != null) {
+            publicar(leido);
+            System.out.println("[Caja] Saldo esperado: " + String.format("%.2f", leido.saldo()));
+        }
+    }
+
+    /**
+     * Reemplaza el saldo por uno recién guardado, salvo que ya haya uno más
+     * nuevo (de un día posterior o con versión mayor).
+     */
+    synchronized void publicar(SaldoCajaDAO.Saldo saldo) {
+        if (saldo == null) {
+            return;
+        }
+        if (actual == null) {
+            actual = saldo;
+            return;
+        }
+        int dia = saldo.fecha().compareTo(actual.fecha());
+        if (dia > 0 || (dia == 0 && saldo.version() > actual.version())) {
+            actual = saldo;
+        }
+    }
+
+    /** Saldo esperado de hoy; 0 si hoy todavía no hubo movimientos de efectivo. */
+    synchronized double saldoDeHoy() {
+        if (actual == null || !actual.fecha().equals(LocalDate.now().toString())) {
+            return 0;
+        }
+        return actual.saldo();
+    }
+}
@@ -5,12 +5,27 @@ import com.sellcontrol.config.AppPaths;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Servicio para gestionar la configuración del ticket de venta.
  * Los valores se guardan en un archivo 'ticket.properties' junto a la base de
  * datos.
+ *
+ * El archivo se lee una vez por proceso: actual() devuelve la configuración
+ * vigente (inmutable), que se reemplaza de forma atómica al guardar desde la
+ * pantalla o cuando el archivo cambia en disco. Para editar se crea una copia
+ * con new TicketConfigService() y se publica con guardar().
+ *
+ * Cada configuración nueva se compila como PlantillaTicket (logo incluido,
+ * que puede tardar medio segundo) en el hilo "ticket-plantilla", así la
+ * impresión en el hilo de la caja solo toma la plantilla ya hecha. Al
+ * recargar desde disco la configuración se publica recién compilada.
  */
 public class TicketConfigService {
 
@@ -28,6 +43,9 @@ public class TicketConfigService {
     private static final String KEY_DATO_OPCIONAL_2 = "dato_opcional_2";
     private static final String KEY_PIE = "pie";
     private static final String KEY_PRINTER_NAME = "printer_name";
+    private static final String KEY_PRINTER_DEVICE = "printer_device";
+    private static final String KEY_IMPRIMIR_LOGO = "imprimir_logo";
+    private static final String KEY_LOGO_PATH = "logo_path";
 
     // Valores por defecto
     private static final String DEF_NOMBRE = "VERDULERIA VL";
@@ -39,15 +57,63 @@ public class TicketConfigService {
     private static final String DEF_DATO_2 = "";
     private static final String DEF_PIE = "Gracias por su compra!";
     private static final String DEF_PRINTER_NAME = "HOP-H58";
+    private static final String DEF_PRINTER_DEVICE = ""; // vacío = impresora del sistema
+    private static final String DEF_IMPRIMIR_LOGO = "false";
+    private static final String DEF_LOGO_PATH = ""; // vacío = ícono de la aplicación
 
-    private final Properties props = new Properties();
+    /** Espera tras un aviso del WatchService, para leer el archivo ya escrito. */
+    private static final long ESPERA_RECARGA_MS = 200;
 
+    /** Configuración vigente (instancia de solo lectura), compartida por todo el proceso. */
+    private static final AtomicReference<TicketConfigService> VIGENTE = new AtomicReference<>();
+
+    /** Compila las plantillas en orden de publicación, fuera del hilo de JavaFX. */
+    private static final ExecutorService COMPILADOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ticket-plantilla");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<String, String> valores;
+    private final boolean soloLectura;
+
+    private TicketConfigService(Map<String, String> valores, boolean soloLectura) {
+        this.valores = valores;
+        this.soloLectura = soloLectura;
+    }
+
+    /**
+     * Crea una copia editable de la configuración vigente (para la pantalla de
+     * configuración). No lee el archivo.
+     */
     public TicketConfigService() {
-        cargar();
+        this(new HashMap<>(actual().valores), false);
+    }
+
+    /**
+     * Configuración vigente, de solo lectura. El archivo se lee una sola vez;
+     * después se recarga solo cuando cambia en disco o al guardar.
+     */
+    public static TicketConfigService actual() {
+        TicketConfigService config = VIGENTE.get();
+        if (config == null) {
+            synchronized (TicketConfigService.class) {
+                config = VIGENTE.get();
+                if (config == null) {
+                    config = cargar();
+                    VIGENTE.set(config);
+                    TicketConfigService cargada = config;
+                    COMPILADOR.execute(() -> PlantillaTicket.precompilar(cargada));
+                    vigilarArchivo();
+                }
+            }
+        }
+        return config;
     }
 
     /** Carga las propiedades del archivo. Si no existe, usa valores por defecto. */
-    private void cargar() {
+    private static TicketConfigService cargar() {
+        Properties props = new Properties();
         Path path = Paths.get(getConfigFile());
         if (Files.exists(path)) {
             try (Reader r = new InputStreamReader(new FileInputStream(path.toFile()), StandardCharsets.UTF_8)) {
@@ -66,89 +132,209 @@ public class TicketConfigService {
         props.putIfAbsent(KEY_DATO_OPCIONAL_2, DEF_DATO_2);
         props.putIfAbsent(KEY_PIE, DEF_PIE);
         props.putIfAbsent(KEY_PRINTER_NAME, DEF_PRINTER_NAME);
+        props.putIfAbsent(KEY_PRINTER_DEVICE, DEF_PRINTER_DEVICE);
+        props.putIfAbsent(KEY_IMPRIMIR_LOGO, DEF_IMPRIMIR_LOGO);
+        props.putIfAbsent(KEY_LOGO_PATH, DEF_LOGO_PATH);
+
+        Map<String, String> valores = new HashMap<>();
+        for (String key : props.stringPropertyNames()) {
+            valores.put(key, props.getProperty(key));
+        }
+        return new TicketConfigService(Map.copyOf(valores), true);
     }
 
-    /** Guarda las propiedades actuales al archivo. */
+    /**
+     * Vigila el directorio de configuración en un hilo daemon y reemplaza la
+     * configuración vigente cuando el archivo se crea o modifica (por ejemplo,
+     * si se edita a mano el nombre de la impresora).
+     */
+    private static void vigilarArchivo() {
+        Path archivo = Paths.get(getConfigFile()).toAbsolutePath();
+        Path dir = archivo.getParent();
+        WatchService watcher;
+        try {
+            watcher = dir.getFileSystem().newWatchService();
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            System.err.println("[TicketConfig] No se puede vigilar " + dir + ": " + e.getMessage());
+            return;
+        }
+
+        Thread t = new Thread(() -> {
+            while (true) {
+                WatchKey key;
+                try {
+                    key = watcher.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+                boolean cambio = false;
+                for (WatchEvent<?> ev : key.pollEvents()) {
+                    if (archivo.getFileName().equals(ev.context())) {
+                        cambio = true;
+                    }
+                }
+                if (!key.reset()) {
+                    return;
+                }
+                if (cambio) {
+                    try {
+                        Thread.sleep(ESPERA_RECARGA_MS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    TicketConfigService recargada = cargar();
+                    COMPILADOR.execute(() -> {
+                        PlantillaTicket.precompilar(recargada);
+                        VIGENTE.set(recargada);
+                        System.out.println("[TicketConfig] Configuración recargada desde disco.");
+                    });
+                }
+            }
+        }, "ticket-config-watcher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Guarda los valores al archivo y los publica como configuración vigente.
+     * Se escribe a un temporal y se reemplaza el archivo de una vez, para que
+     * la recarga automática nunca lea un archivo a medio escribir.
+     */
     public void guardar() {
-        try (Writer w = new OutputStreamWriter(new FileOutputStream(getConfigFile()), StandardCharsets.UTF_8)) {
-            props.store(w, "Configuración del ticket de venta");
+        if (soloLectura) {
+            throw new IllegalStateException("La configuración vigente es de solo lectura.");
+        }
+        Properties props = new Properties();
+        props.putAll(valores);
+        Path path = Paths.get(getConfigFile());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (Writer w = new OutputStreamWriter(new FileOutputStream(tmp.toFile()), StandardCharsets.UTF_8)) {
+                props.store(w, "Configuración del ticket de venta");
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            TicketConfigService guardada = new TicketConfigService(Map.copyOf(valores), true);
+            VIGENTE.set(guardada);
+            COMPILADOR.execute(() -> PlantillaTicket.precompilar(guardada));
             System.out.println("[TicketConfig] Configuración guardada.");
         } catch (IOException e) {
             System.err.println("[TicketConfig] Error al guardar config: " + e.getMessage());
         }
     }
 
+    private void poner(String key, String val) {
+        if (soloLectura) {
+            throw new IllegalStateException("La configuración vigente es de solo lectura.");
+        }
+        valores.put(key, val);
+    }
+
     // --- Getters ---
     public String getNombreNegocio() {
-        return props.getProperty(KEY_NOMBRE_NEGOCIO, DEF_NOMBRE);
+        return valores.getOrDefault(KEY_NOMBRE_NEGOCIO, DEF_NOMBRE);
     }
 
     public String getSubtitulo() {
-        return props.getProperty(KEY_SUBTITULO, DEF_SUBTITULO);
+        return valores.getOrDefault(KEY_SUBTITULO, DEF_SUBTITULO);
     }
 
     public String getDireccion() {
-        return props.getProperty(KEY_DIRECCION, DEF_DIRECCION);
+        return valores.getOrDefault(KEY_DIRECCION, DEF_DIRECCION);
     }
 
     public String getTelefono() {
-        return props.getProperty(KEY_TELEFONO, DEF_TELEFONO);
+        return valores.getOrDefault(KEY_TELEFONO, DEF_TELEFONO);
     }
 
     public String getPie() {
-        return props.getProperty(KEY_PIE, DEF_PIE);
+        return valores.getOrDefault(KEY_PIE, DEF_PIE);
     }
 
     public String getCedula() {
-        return props.getProperty(KEY_CEDULA, DEF_CEDULA);
+        return valores.getOrDefault(KEY_CEDULA, DEF_CEDULA);
     }
 
     public String getDatoOpcional1() {
-        return props.getProperty(KEY_DATO_OPCIONAL_1, DEF_DATO_1);
+        return valores.getOrDefault(KEY_DATO_OPCIONAL_1, DEF_DATO_1);
     }
 
     public String getDatoOpcional2() {
-        return props.getProperty(KEY_DATO_OPCIONAL_2, DEF_DATO_2);
+        return valores.getOrDefault(KEY_DATO_OPCIONAL_2, DEF_DATO_2);
     }
 
     public String getPrinterName() {
-        return props.getProperty(KEY_PRINTER_NAME, DEF_PRINTER_NAME);
+        return valores.getOrDefault(KEY_PRINTER_NAME, DEF_PRINTER_NAME);
+    }
+
+    /**
+     * Ruta del dispositivo para escribir el ticket directo, sin spooler (ej:
+     * /dev/usb/lp0). Vacía = imprimir por la impresora del sistema
+     * (printer_name).
+     */
+    public String getPrinterDevice() {
+        return valores.getOrDefault(KEY_PRINTER_DEVICE, DEF_PRINTER_DEVICE).trim();
+    }
+
+    public boolean isImprimirLogo() {
+        return Boolean.parseBoolean(valores.getOrDefault(KEY_IMPRIMIR_LOGO, DEF_IMPRIMIR_LOGO).trim());
+    }
+
+    /** Imagen del logo (PNG, JPG...). Vacía = ícono de la aplicación. */
+    public String getLogoPath() {
+        return valores.getOrDefault(KEY_LOGO_PATH, DEF_LOGO_PATH).trim();
     }
 
     // --- Setters ---
     public void setNombreNegocio(String val) {
-        props.setProperty(KEY_NOMBRE_NEGOCIO, val != null ? val : "");
+        poner(KEY_NOMBRE_NEGOCIO, val != null ? val : "");
     }
 
     public void setSubtitulo(String val) {
-        props.setProperty(KEY_SUBTITULO, val != null ? val : "");
+        poner(KEY_SUBTITULO, val != null ? val : "");
     }
 
     public void setDireccion(String val) {
-        props.setProperty(KEY_DIRECCION, val != null ? val : "");
+        poner(KEY_DIRECCION, val != null ? val : "");
     }
 
     public void setTelefono(String val) {
-        props.setProperty(KEY_TELEFONO, val != null ? val : "");
+        poner(KEY_TELEFONO, val != null ? val : "");
     }
 
     public void setCedula(String val) {
-        props.setProperty(KEY_CEDULA, val != null ? val : "");
+        poner(KEY_CEDULA, val != null ? val : "");
     }
 
     public void setDatoOpcional1(String val) {
-        props.setProperty(KEY_DATO_OPCIONAL_1, val != null ? val : "");
+        poner(KEY_DATO_OPCIONAL_1, val != null ? val : "");
     }
 
     public void setDatoOpcional2(String val) {
-        props.setProperty(KEY_DATO_OPCIONAL_2, val != null ? val : "");
+        poner(KEY_DATO_OPCIONAL_2, val != null ? val : "");
     }
 
     public void setPie(String val) {
-        props.setProperty(KEY_PIE, val != null ? val : "");
+        poner(KEY_PIE, val != null ? val : "");
     }
 
     public void setPrinterName(String val) {
-        props.setProperty(KEY_PRINTER_NAME, val != null && !val.isBlank() ? val : DEF_PRINTER_NAME);
+        poner(KEY_PRINTER_NAME, val != null && !val.isBlank() ? val : DEF_PRINTER_NAME);
+    }
+
+    public void setPrinterDevice(String val) {
+        poner(KEY_PRINTER_DEVICE, val != null ? val.trim() : DEF_PRINTER_DEVICE);
+    }
+
+    public void setImprimirLogo(boolean val) {
+        poner(KEY_IMPRIMIR_LOGO, String.valueOf(val));
+    }
+
+    public void setLogoPath(String val) {
+        poner(KEY_LOGO_PATH, val != null ? val.trim() : DEF_LOGO_PATH);
     }
 }
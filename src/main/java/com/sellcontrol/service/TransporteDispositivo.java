@@ -0,0 +1,57 @@
+package com.sellcontrol.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Escribe los bytes ESC/POS directo al dispositivo de la impresora (ej:
+ * /dev/usb/lp0 en Linux), sin pasar por javax.print ni CUPS: es el camino
+ * de menor latencia para la HOP-H58 por USB.
+ *
+ * El dispositivo se abre en cada trabajo, así que sobrevive a que se
+ * desconecte y vuelva a conectar el cable. Cualquier archivo o tubería con
+ * nombre sirve en su lugar: los bytes se agregan al final, tal cual se
+ * mandarían a la impresora.
+ */
+final class TransporteDispositivo implements TransporteImpresora {
+
+    private final Path dispositivo;
+    private final MonitorImpresora monitor;
+
+    TransporteDispositivo(Path dispositivo, MonitorImpresora monitor) {
+        this.dispositivo = dispositivo;
+        this.monitor = monitor;
+    }
+
+    @Override
+    public String enviar(byte[] datos) {
+        String error;
+        try (FileChannel ch = FileChannel.open(dispositivo, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(datos);
+            while (buffer.hasRemaining()) {
+                ch.write(buffer);
+            }
+            monitor.reportarExito(nombre());
+            return null;
+        } catch (NoSuchFileException e) {
+            error = "Dispositivo '" + dispositivo + "' no encontrado. Verifique que la impresora esté conectada.";
+        } catch (AccessDeniedException e) {
+            error = "Sin permiso para escribir en '" + dispositivo + "' (en Linux, agregar el usuario al grupo lp).";
+        } catch (IOException e) {
+            error = "Error al escribir en '" + dispositivo + "': " + e.getMessage();
+        }
+        monitor.reportarFallo(nombre(), error);
+        System.err.println("[TicketPrint] " + error);
+        return error;
+    }
+
+    @Override
+    public String nombre() {
+        return dispositivo.toString();
+    }
+}
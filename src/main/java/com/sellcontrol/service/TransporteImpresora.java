@@ -0,0 +1,20 @@
+package com.sellcontrol.service;
+
+/**
+ * Forma de hacer llegar los bytes ESC/POS a la impresora.
+ * TicketPrintService elige la implementación según la configuración:
+ * TransporteJavaxPrint (impresora instalada en el sistema) o
+ * TransporteDispositivo (escritura directa al dispositivo, sin spooler).
+ */
+interface TransporteImpresora {
+
+    /**
+     * Envía los bytes a la impresora.
+     *
+     * @return null si OK, o mensaje de error
+     */
+    String enviar(byte[] datos);
+
+    /** Nombre de la impresora o ruta del dispositivo, para mensajes y estado. */
+    String nombre();
+}
@@ -0,0 +1,51 @@
+package com.sellcontrol.service;
+
+import javax.print.Doc;
+import javax.print.DocFlavor;
+import javax.print.DocPrintJob;
+import javax.print.PrintException;
+import javax.print.PrintService;
+import javax.print.SimpleDoc;
+import javax.print.attribute.HashPrintRequestAttributeSet;
+
+/**
+ * Imprime por una impresora instalada en el sistema (javax.print).
+ * En Windows usa el driver (ej: "HOP-H58"); en Linux necesita una cola de
+ * CUPS en modo raw. La impresora se toma de la caché de MonitorImpresora.
+ */
+final class TransporteJavaxPrint implements TransporteImpresora {
+
+    private final String printerName;
+    private final MonitorImpresora monitor;
+
+    TransporteJavaxPrint(String printerName, MonitorImpresora monitor) {
+        this.printerName = printerName;
+        this.monitor = monitor;
+    }
+
+    @Override
+    public String enviar(byte[] datos) {
+        try {
+            PrintService printService = monitor.obtener(printerName);
+            if (printService == null) {
+                return "Impresora '" + printerName + "' no encontrada. Verifique que esté conectada e instalada.";
+            }
+
+            DocPrintJob job = printService.createPrintJob();
+            Doc doc = new SimpleDoc(datos, DocFlavor.BYTE_ARRAY.AUTOSENSE, null);
+            job.print(doc, new HashPrintRequestAttributeSet());
+
+            monitor.reportarExito(printerName);
+            return null;
+        } catch (PrintException e) {
+            monitor.reportarFallo(printerName, e.getMessage());
+            System.err.println("[TicketPrint] Error de impresión en " + printerName + ": " + e.getMessage());
+            return "Error al imprimir: " + e.getMessage();
+        }
+    }
+
+    @Override
+    public String nombre() {
+        return printerName;
+    }
+}
@@ -170,9 +170,20 @@ public class UsuarioService {
         return sb.length() > 0 ? sb.toString() : null;
     }
 
+    /**
+     * Indica si el usuario tiene registros de auditoría, vigentes o
+     * archivados. Un usuario así no se puede eliminar con sus registros: solo
+     * desactivar.
+     */
+    public boolean tieneAuditoria(int id) {
+        return usuarioDAO.tieneAuditoria(id);
+    }
+
     /**
      * Elimina un usuario del sistema.
-     * Si forzar=true, elimina también todos los registros asociados.
+     * Si forzar=true, elimina también todos los registros asociados; pero si
+     * tiene registros de auditoría no borra nada, lo desactiva y retorna
+     * "DESACTIVADO" (sus ventas y movimientos se conservan).
      * 
      * @return mensaje de error o null si fue exitoso.
      */
@@ -192,6 +203,20 @@ public class UsuarioService {
             return "TIENE_REGISTROS"; // señal para el controller
         }
 
+        if (tieneRegistros && tieneAuditoria(id)) {
+            if (!usuarioDAO.desactivar(id))
+                return "Error al desactivar el usuario en la base de datos.";
+            if (current != null) {
+                auditLogDAO.insert(new AuditLog(current.getId(), "DESACTIVAR_USUARIO", "USUARIO", id));
+            }
+            return "DESACTIVADO"; // señal para el controller
+        }
+
+        if (tieneRegistros && usuarioDAO.tieneRegistrosDeHoy(id)) {
+            return "El usuario tiene ventas o movimientos de caja de hoy, ya sumados en el saldo de la caja: "
+                    + "no se pueden eliminar. Puede desactivarlo con Activar/Desactivar.";
+        }
+
         boolean eliminado;
         if (tieneRegistros) {
             eliminado = usuarioDAO.deleteConRegistros(id);
@@ -2,13 +2,19 @@ package com.sellcontrol.service;
 
 import com.sellcontrol.dao.AuditLogDAO;
 import com.sellcontrol.dao.DetalleVentaDAO;
+import com.sellcontrol.dao.SaldoCajaDAO;
 import com.sellcontrol.dao.VentaDAO;
+import com.sellcontrol.db.DatabaseManager;
+import com.sellcontrol.db.DbExecutor;
 import com.sellcontrol.model.AuditLog;
 import com.sellcontrol.model.DetalleVenta;
 import com.sellcontrol.model.Usuario;
 import com.sellcontrol.model.Venta;
 
+import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Servicio de gestión de ventas.
@@ -20,19 +26,26 @@ public class VentaService {
     private final VentaDAO ventaDAO = new VentaDAO();
     private final DetalleVentaDAO detalleVentaDAO = new DetalleVentaDAO();
     private final AuditLogDAO auditLogDAO = new AuditLogDAO();
+    private final SaldoCajaDAO saldoCajaDAO = new SaldoCajaDAO();
+    private final SaldoCaja saldoCaja = SaldoCaja.getInstance();
 
     /**
      * Registra una venta completa con sus detalles.
+     * La venta, todas sus líneas (en batch) y la auditoría se escriben en una
+     * sola transacción: o queda todo guardado con un único commit, o nada.
+     * Si entra efectivo a la caja, su saldo se actualiza en la misma
+     * transacción.
      * 
-     * @return el ID de la venta creada, o -1 si falla.
+     * @return la venta creada, con el ID y la fecha_hora de la base, o null si
+     *         falla.
      */
-    public int registrarVenta(String metodoPago, String estado, String clienteNombre, List<DetalleVenta> detalles) {
+    public Venta registrarVenta(String metodoPago, String estado, String clienteNombre, List<DetalleVenta> detalles) {
         if (detalles == null || detalles.isEmpty())
-            return -1;
+            return null;
 
         Usuario user = AuthService.getCurrentUser();
         if (user == null)
-            return -1;
+            return null;
 
         // Calcular total
         double total = 0;
@@ -48,21 +61,31 @@ public class VentaService {
         v.setEstado(estado);
         v.setClienteNombre(clienteNombre);
 
-        int ventaId = ventaDAO.insert(v);
-        if (ventaId < 0)
-            return -1;
-
-        // Insertar detalles
-        for (DetalleVenta dv : detalles) {
-            dv.setVentaId(ventaId);
-            detalleVentaDAO.insert(dv);
+        double efectivo = "COBRADA".equals(estado) ? SaldoCaja.efectivo(metodoPago, total) : 0;
+        AtomicReference<SaldoCajaDAO.Saldo> nuevoSaldo = new AtomicReference<>();
+        int ventaId;
+        try {
+            ventaId = DatabaseManager.getInstance().inTransaction(conn -> {
+                int id = ventaDAO.insert(conn, v);
+                for (DetalleVenta dv : detalles) {
+                    dv.setVentaId(id);
+                }
+                detalleVentaDAO.insertBatch(conn, detalles);
+                auditLogDAO.insert(conn, new AuditLog(user.getId(), "REGISTRAR_VENTA", "VENTA", id));
+                if (efectivo != 0) {
+                    nuevoSaldo.set(saldoCajaDAO.sumar(conn, efectivo));
+                }
+                return id;
+            });
+        } catch (SQLException e) {
+            System.err.println("[VentaService] Error al registrar venta, rollback: " + e.getMessage());
+            return null;
         }
+        saldoCaja.publicar(nuevoSaldo.get());
 
-        // Auditoría
-        auditLogDAO.insert(new AuditLog(user.getId(), "REGISTRAR_VENTA", "VENTA", ventaId));
         System.out.println("[VentaService] Venta #" + ventaId + " registrada. Total: $" + String.format("%.2f", total));
 
-        return ventaId;
+        return v;
     }
 
     /**
@@ -74,9 +97,30 @@ public class VentaService {
 
     /**
      * Cobra una venta pendiente (fiada) con el método de pago indicado.
+     * Si se cobra en EFECTIVO, el saldo de la caja se actualiza en la misma
+     * transacción.
      */
     public String cobrarVenta(int ventaId, String metodoPago) {
-        if (ventaDAO.cobrar(ventaId, metodoPago)) {
+        AtomicReference<SaldoCajaDAO.Saldo> nuevoSaldo = new AtomicReference<>();
+        boolean cobrada;
+        try {
+            cobrada = DatabaseManager.getInstance().inTransaction(conn -> {
+                double total = ventaDAO.cobrar(conn, ventaId, metodoPago);
+                if (total < 0) {
+                    return false;
+                }
+                double efectivo = SaldoCaja.efectivo(metodoPago, total);
+                if (efectivo != 0) {
+                    nuevoSaldo.set(saldoCajaDAO.sumar(conn, efectivo));
+                }
+                return true;
+            });
+        } catch (SQLException e) {
+            System.err.println("[VentaService] Error al cobrar venta, rollback: " + e.getMessage());
+            cobrada = false;
+        }
+        if (cobrada) {
+            saldoCaja.publicar(nuevoSaldo.get());
             Usuario user = AuthService.getCurrentUser();
             if (user != null) {
                 auditLogDAO.insert(new AuditLog(user.getId(), "COBRAR_VENTA", "VENTA", ventaId));
@@ -93,6 +137,13 @@ public class VentaService {
         return ventaDAO.findVentasHoy();
     }
 
+    /**
+     * Obtiene las ventas del día en el hilo de base de datos.
+     */
+    public CompletableFuture<List<Venta>> ventasDeHoyAsync() {
+        return DbExecutor.submit(this::ventasDeHoy);
+    }
+
     /**
      * Obtiene las ventas pendientes (fiadas).
      */
@@ -100,6 +151,13 @@ public class VentaService {
         return ventaDAO.findPendientes();
     }
 
+    /**
+     * Obtiene las ventas pendientes en el hilo de base de datos.
+     */
+    public CompletableFuture<List<Venta>> ventasPendientesAsync() {
+        return DbExecutor.submit(this::ventasPendientes);
+    }
+
     /**
      * Obtiene los detalles de una venta.
      */
@@ -0,0 +1,96 @@
+package com.sellcontrol.service;
+
+import com.sellcontrol.model.DetalleVenta;
+import com.sellcontrol.model.Venta;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark de PlantillaTicket.generar: bytes asignados y tiempo por ticket.
+ * No es parte de la aplicación (está en las fuentes de prueba, fuera del
+ * jar); se corre a mano para medir cambios en la generación del ticket:
+ *
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.sellcontrol.service.BenchPlantillaTicket [tickets] [lineas]
+ * </pre>
+ *
+ * Usa la configuración de ticket del directorio actual (config/ticket.properties,
+ * o los valores por defecto). Las asignaciones se miden con
+ * com.sun.management.ThreadMXBean.getThreadAllocatedBytes del hilo actual, así
+ * que incluyen el arreglo devuelto por cada llamada.
+ */
+final class BenchPlantillaTicket {
+
+    private static final int CALENTAMIENTO = 50_000;
+
+    private BenchPlantillaTicket() {
+    }
+
+    public static void main(String[] args) {
+        int tickets = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int lineas = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!hilos.isThreadAllocatedMemorySupported()) {
+            System.err.println("[Bench] La JVM no soporta medir asignaciones por hilo.");
+            return;
+        }
+        hilos.setThreadAllocatedMemoryEnabled(true);
+        long hilo = Thread.currentThread().threadId();
+
+        Venta venta = ventaDePrueba();
+        List<DetalleVenta> detalles = detallesDePrueba(lineas);
+        venta.setTotal(detalles.stream().mapToDouble(DetalleVenta::getSubtotal).sum());
+        PlantillaTicket plantilla = PlantillaTicket.de(TicketConfigService.actual());
+
+        long tamano = 0;
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            tamano += plantilla.generar(venta, detalles, "Cajero", 10_000, 1_550).length;
+        }
+
+        tamano = 0;
+        long bytesAntes = hilos.getThreadAllocatedBytes(hilo);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < tickets; i++) {
+            tamano += plantilla.generar(venta, detalles, "Cajero", 10_000, 1_550).length;
+        }
+        long nanos = System.nanoTime() - inicio;
+        long bytes = hilos.getThreadAllocatedBytes(hilo) - bytesAntes;
+
+        System.out.printf("[Bench] %d tickets de %d líneas (%d bytes ESC/POS c/u)%n", tickets, lineas,
+                tamano / tickets);
+        System.out.printf("[Bench] asignado: %d bytes/ticket%n", bytes / tickets);
+        System.out.printf("[Bench] tiempo:   %.2f us/ticket%n", nanos / 1_000.0 / tickets);
+    }
+
+    private static Venta ventaDePrueba() {
+        Venta v = new Venta();
+        v.setId(123456);
+        v.setFechaHora("2026-01-15 10:42:07");
+        v.setUsuarioId(1);
+        v.setMetodoPago("EFECTIVO");
+        v.setEstado("COBRADA");
+        v.setClienteNombre("José Pérez");
+        return v;
+    }
+
+    private static List<DetalleVenta> detallesDePrueba(int lineas) {
+        String[] nombres = { "Tomate", "Papa", "Cebolla", "Plátano maduro", "Chile dulce", "Culantro", "Piña",
+                "Zanahoria" };
+        List<DetalleVenta> detalles = new ArrayList<>(lineas);
+        for (int i = 0; i < lineas; i++) {
+            DetalleVenta d = new DetalleVenta();
+            d.setProductoId(i + 1);
+            d.setNombreProducto(nombres[i % nombres.length]);
+            boolean kg = i % 2 == 0;
+            d.setTipoUnidad(kg ? "KG" : "UNIDAD");
+            d.setCantidad(kg ? 1.25 + i : i + 1);
+            d.setSubtotal(d.getCantidad() * 850);
+            detalles.add(d);
+        }
+        return detalles;
+    }
+}
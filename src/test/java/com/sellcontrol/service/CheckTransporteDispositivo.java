@@ -0,0 +1,118 @@
+package com.sellcontrol.service;
+
+import com.sellcontrol.model.DetalleVenta;
+import com.sellcontrol.model.Venta;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verifica que TransporteDispositivo deje en el dispositivo exactamente los
+ * bytes del trabajo, usando un archivo temporal en lugar de /dev/usb/lp0.
+ * El proyecto no tiene framework de pruebas, así que se corre a mano (termina
+ * con código 1 si algo no coincide):
+ *
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.sellcontrol.service.CheckTransporteDispositivo
+ * </pre>
+ *
+ * Manda un ticket real de PlantillaTicket y un bloque con los 256 valores de
+ * byte (para detectar cualquier conversión de texto o de fin de línea), y
+ * revisa que el segundo trabajo se agregue al final del primero.
+ */
+final class CheckTransporteDispositivo {
+
+    private static int fallos;
+
+    private CheckTransporteDispositivo() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("sellcontrol-lp");
+        Path dispositivo = Files.createFile(dir.resolve("lp0"));
+        TransporteDispositivo transporte = new TransporteDispositivo(dispositivo, MonitorImpresora.getInstance());
+
+        byte[] ticket = PlantillaTicket.de(TicketConfigService.actual())
+                .generar(ventaDePrueba(), detallesDePrueba(), "Cajero", 10_000, 1_550);
+        byte[] todos = new byte[256];
+        for (int i = 0; i < todos.length; i++) {
+            todos[i] = (byte) i;
+        }
+
+        comprobar("ticket", transporte.enviar(ticket), ticket, Files.readAllBytes(dispositivo));
+
+        ByteArrayOutputStream esperado = new ByteArrayOutputStream();
+        esperado.writeBytes(ticket);
+        esperado.writeBytes(todos);
+        comprobar("agregado al final", transporte.enviar(todos), esperado.toByteArray(),
+                Files.readAllBytes(dispositivo));
+
+        Path inexistente = dir.resolve("lp1");
+        String error = new TransporteDispositivo(inexistente, MonitorImpresora.getInstance()).enviar(ticket);
+        if (error == null || Files.exists(inexistente)) {
+            fallo("dispositivo inexistente: se esperaba un error y que no se creara el archivo");
+        } else {
+            System.out.println("[Check] dispositivo inexistente: OK");
+        }
+
+        Files.delete(dispositivo);
+        Files.delete(dir);
+        if (fallos > 0) {
+            System.err.println("[Check] " + fallos + " comprobación(es) fallida(s).");
+            System.exit(1);
+        }
+        System.out.println("[Check] TransporteDispositivo OK (" + esperado.size() + " bytes).");
+        System.exit(0);
+    }
+
+    private static void comprobar(String caso, String error, byte[] esperado, byte[] escrito) {
+        if (error != null) {
+            fallo(caso + ": enviar devolvió error: " + error);
+            return;
+        }
+        int diferencia = Arrays.mismatch(esperado, escrito);
+        if (diferencia >= 0) {
+            fallo(caso + ": los bytes difieren en la posición " + diferencia + " (esperados " + esperado.length
+                    + ", escritos " + escrito.length + ")");
+            return;
+        }
+        System.out.println("[Check] " + caso + ": OK (" + escrito.length + " bytes)");
+    }
+
+    private static void fallo(String mensaje) {
+        fallos++;
+        System.err.println("[Check] FALLO " + mensaje);
+    }
+
+    private static Venta ventaDePrueba() {
+        Venta v = new Venta();
+        v.setId(123456);
+        v.setFechaHora("2026-01-15 10:42:07");
+        v.setUsuarioId(1);
+        v.setMetodoPago("EFECTIVO");
+        v.setEstado("COBRADA");
+        v.setClienteNombre("José Pérez");
+        return v;
+    }
+
+    private static List<DetalleVenta> detallesDePrueba() {
+        DetalleVenta kg = new DetalleVenta();
+        kg.setProductoId(1);
+        kg.setNombreProducto("Plátano maduro");
+        kg.setTipoUnidad("KG");
+        kg.setCantidad(1.25);
+        kg.setSubtotal(1_062.5);
+        DetalleVenta unidad = new DetalleVenta();
+        unidad.setProductoId(2);
+        unidad.setNombreProducto("Piña");
+        unidad.setTipoUnidad("UNIDAD");
+        unidad.setCantidad(3);
+        unidad.setSubtotal(2_550);
+        return List.of(kg, unidad);
+    }
+}